@@ -0,0 +1,41 @@
+package com.backend.backend.benchmark;
+
+import com.backend.backend.common.id.SnowflakeIdGenerator;
+import com.baomidou.mybatisplus.core.toolkit.Sequence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 23:55
+ * @description :  雪花Id生成的基准测试，与MybatisPlus自带的Sequence对比，8线程
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmark {
+
+    private final Sequence sequence = new Sequence(1, 18);
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 0L, 1000L);
+
+    @Benchmark
+    public long sequence() {
+        return sequence.nextId();
+    }
+
+    @Benchmark
+    public long snowflake() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(500)
+    public long[] snowflakeBatch() {
+        return generator.nextIds(500);
+    }
+}
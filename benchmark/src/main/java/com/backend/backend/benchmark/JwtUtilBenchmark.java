@@ -0,0 +1,86 @@
+package com.backend.backend.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.backend.backend.common.utils.Base64ConvertUtil;
+import com.backend.backend.jwt.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static com.backend.backend.enums.TokenEnum.*;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 11:05
+ * @description :  JwtUtil签名、校验的基准测试
+ * legacy* 为缓存Algorithm/JWTVerifier之前的实现（每次解密私钥、新建Algorithm和JWTVerifier），用于对比
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilBenchmark {
+
+    private static final String USER_ID = "1203456789012345678";
+    private static final String USER_NAME = "goodtimp";
+    private static final String USER_TYPE = "1";
+
+    private String token;
+    private String createTime;
+
+    @Setup
+    public void setup() {
+        createTime = String.valueOf(System.currentTimeMillis());
+        token = JwtUtil.sign(USER_ID, USER_NAME, USER_TYPE, createTime);
+    }
+
+    @Benchmark
+    public String sign() {
+        return JwtUtil.sign(USER_ID, USER_NAME, USER_TYPE, createTime);
+    }
+
+    @Benchmark
+    public String legacySign() throws UnsupportedEncodingException {
+        String secret = USER_ID + Base64ConvertUtil.decode(ENCRYPT_JWT_KEY.getCode());
+        Date date = new Date(System.currentTimeMillis() + Long.parseLong(ACCESS_TOKEN_EXPIRE_TIME.getCode()) * 1000L);
+        Algorithm algorithm = Algorithm.HMAC256(secret);
+        return JWT.create()
+                .withClaim(PAYLOAD_USER_ID_TAG.getCode(), USER_ID)
+                .withClaim(PAYLOAD_CREATE_TIME_TAG.getCode(), createTime)
+                .withClaim(PAYLOAD_USER_NAME_TAG.getCode(), USER_NAME)
+                .withClaim(PAYLOAD_USER_TYPE_TAG.getCode(), USER_TYPE)
+                .withClaim(PAYLOAD_ROLE_TAG.getCode(), "")
+                .withExpiresAt(date)
+                .sign(algorithm);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return JwtUtil.verify(token);
+    }
+
+    @Benchmark
+    public DecodedJWT legacyVerify() throws UnsupportedEncodingException {
+        String secret = JwtUtil.getClaim(token, PAYLOAD_USER_ID_TAG.getCode()) + Base64ConvertUtil.decode(ENCRYPT_JWT_KEY.getCode());
+        Algorithm algorithm = Algorithm.HMAC256(secret);
+        JWTVerifier verifier = JWT.require(algorithm).build();
+        return verifier.verify(token);
+    }
+
+    @Benchmark
+    public String getClaim() {
+        return JwtUtil.getClaim(token, PAYLOAD_USER_ID_TAG.getCode());
+    }
+
+    @Benchmark
+    public String signRefreshToken() {
+        return JwtUtil.signRefreshToken(USER_ID, USER_NAME, createTime);
+    }
+}
@@ -0,0 +1,42 @@
+package com.backend.backend.benchmark;
+
+import com.backend.backend.model.entity.Logistics;
+import com.backend.backend.service.impl.LogisticsServiceImpl;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 16:50
+ * @description :  LogisticsServiceImpl.getList查询条件构造的基准测试，不访问数据库
+ * buildAndRender 同时生成sql片段，相当于mapper执行前的全部准备工作
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogisticsQueryBenchmark {
+
+    @Setup
+    public void setup() {
+        // lambda条件需要实体的表信息，正常由mapper扫描时初始化
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Logistics.class);
+    }
+
+    @Benchmark
+    public QueryWrapper<Logistics> build() {
+        return LogisticsServiceImpl.buildListQuery(null, 1, "快递", null, "13800000000", 1203456789012345000L);
+    }
+
+    @Benchmark
+    public String buildAndRender() {
+        return LogisticsServiceImpl.buildListQuery(null, 1, "快递", null, "13800000000", 1203456789012345000L).getCustomSqlSegment();
+    }
+}
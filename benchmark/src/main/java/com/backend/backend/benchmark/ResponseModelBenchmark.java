@@ -0,0 +1,63 @@
+package com.backend.backend.benchmark;
+
+import com.backend.backend.common.model.ResponseModel;
+import com.backend.backend.model.entity.Logistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 16:45
+ * @description :  ResponseModel构造和toJsonString的基准测试
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseModelBenchmark {
+
+    /**
+     * data中物流信息的条数
+     */
+    @Param({"1", "20"})
+    private int size;
+
+    private List<Logistics> list;
+
+    @Setup
+    public void setup() {
+        list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Logistics logistics = new Logistics();
+            logistics.setLogId(1203456789012345678L + i);
+            logistics.setType(1);
+            logistics.setProductName("商品" + i);
+            logistics.setLogCode("A-" + i);
+            logistics.setPostId(1203456789012345000L);
+            logistics.setDeliveryAddress("收货地址" + i);
+            logistics.setShipAddress("发货地址" + i);
+            logistics.setPhone("1380000" + String.format("%04d", i));
+            list.add(logistics);
+        }
+    }
+
+    @Benchmark
+    public ResponseModel success() {
+        return ResponseModel.success("data", list);
+    }
+
+    @Benchmark
+    public String successToJson() {
+        return ResponseModel.success("data", list).toJsonString();
+    }
+
+    @Benchmark
+    public String failToJson() {
+        return ResponseModel.fail(401, "无权访问(Unauthorized):Token已过期").toJsonString();
+    }
+}
@@ -0,0 +1,54 @@
+package com.backend.backend.benchmark;
+
+import com.backend.backend.benchmark.support.InMemoryRedis;
+import com.backend.backend.jwt.JwtToken;
+import com.backend.backend.jwt.JwtUtil;
+import com.backend.backend.shiro.ShiroRealm;
+import com.backend.backend.shiro.cache.VerifiedTokenCache;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 16:40
+ * @description :  ShiroRealm认证的基准测试，Redis使用进程内替身
+ * authenticate 每次先清空本地已验证token缓存，走签名校验和RefreshToken查询的完整路径
+ * authenticateCached 命中本地已验证token缓存
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShiroRealmBenchmark {
+
+    private static final String USER_ID = "1203456789012345678";
+    private static final String USER_NAME = "goodtimp";
+    private static final String USER_TYPE = "1";
+
+    private ShiroRealm realm;
+    private String token;
+
+    @Setup
+    public void setup() {
+        InMemoryRedis.install();
+        realm = new ShiroRealm();
+        String createTime = String.valueOf(System.currentTimeMillis());
+        JwtUtil.addRefreshToken(USER_ID, USER_NAME, createTime);
+        token = JwtUtil.sign(USER_ID, USER_NAME, USER_TYPE, createTime);
+    }
+
+    @Benchmark
+    public AuthenticationInfo authenticate() {
+        VerifiedTokenCache.clear();
+        return realm.getAuthenticationInfo(new JwtToken(token));
+    }
+
+    @Benchmark
+    public AuthenticationInfo authenticateCached() {
+        return realm.getAuthenticationInfo(new JwtToken(token));
+    }
+}
@@ -0,0 +1,31 @@
+package com.backend.backend.benchmark;
+
+import com.backend.backend.common.Tools;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 16:55
+ * @description :  Tools工具方法的基准测试
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToolsBenchmark {
+
+    @Benchmark
+    public Date getGMT8Time() {
+        return Tools.getGMT8Time();
+    }
+
+    @Benchmark
+    public String getRandomString() {
+        return Tools.getRandomString(16);
+    }
+}
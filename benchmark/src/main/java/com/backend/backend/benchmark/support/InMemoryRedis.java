@@ -0,0 +1,113 @@
+package com.backend.backend.benchmark.support;
+
+import com.backend.backend.redis.RedisUtil;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 16:30
+ * @description :  基准测试用的进程内Redis替身
+ * 只实现RedisUtil中字符串类型用到的get/set/setIfAbsent/delete/hasKey，值不做序列化，支持过期时间。
+ * 使用前调用install()替换RedisUtil中的RedisTemplate，不需要连接真实的Redis。
+ */
+public class InMemoryRedis extends RedisTemplate<String, Object> {
+
+    private final Map<String, Entry> data = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, Object> valueOperations = (ValueOperations<String, Object>) Proxy.newProxyInstance(
+            ValueOperations.class.getClassLoader(), new Class<?>[]{ValueOperations.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "get":
+                        return read((String) args[0]);
+                    case "set":
+                        write((String) args[0], args[1], args.length == 4 ? ((TimeUnit) args[3]).toMillis((Long) args[2]) : 0L);
+                        return null;
+                    case "setIfAbsent":
+                        if (read((String) args[0]) != null) {
+                            return false;
+                        }
+                        write((String) args[0], args[1], args.length == 4 ? ((TimeUnit) args[3]).toMillis((Long) args[2]) : 0L);
+                        return true;
+                    case "getOperations":
+                        return this;
+                    default:
+                        throw new UnsupportedOperationException("InMemoryRedis不支持ValueOperations." + method.getName());
+                }
+            });
+
+    /**
+     * 新建并替换RedisUtil中的RedisTemplate
+     *
+     * @return
+     */
+    public static InMemoryRedis install() {
+        InMemoryRedis redis = new InMemoryRedis();
+        new RedisUtil().setRedisTemplate(redis);
+        return redis;
+    }
+
+    @Override
+    public ValueOperations<String, Object> opsForValue() {
+        return valueOperations;
+    }
+
+    @Override
+    public Boolean hasKey(String key) {
+        return read(key) != null;
+    }
+
+    @Override
+    public Boolean delete(String key) {
+        return data.remove(key) != null;
+    }
+
+    @Override
+    public Long delete(Collection<String> keys) {
+        long count = 0;
+        for (String key : keys) {
+            if (data.remove(key) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        // 不需要连接工厂
+    }
+
+    private Object read(String key) {
+        Entry entry = data.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt > 0 && entry.expireAt <= System.currentTimeMillis()) {
+            data.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private void write(String key, Object value, long ttlMillis) {
+        data.put(key, new Entry(value, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0L));
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long expireAt;
+
+        private Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.backend.backend.base;
+
+import com.backend.backend.enums.DelFlagEnum;
+import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import org.apache.ibatis.reflection.MetaObject;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 00:35
+ * @description :  自动填充BaseEntity的审计字段
+ * 新增时填充创建者、更新者、时间和删除标志，已有值的不覆盖；修改时总是覆盖更新者和时间，客户端传入的值不会写库。
+ * 操作人和时间取AuditStamp.current()，同一请求或批次只解析一次；需要指定操作人时（导入、延迟写）用AuditStamp.runAs。
+ */
+public class AuditMetaObjectHandler implements MetaObjectHandler {
+
+    @Override
+    public void insertFill(MetaObject metaObject) {
+        if (!hasEmpty(metaObject, "createById", "createBy", "createTime", "updateById", "updateBy", "updateTime", "delFlag")) {
+            return;
+        }
+        AuditStamp stamp = AuditStamp.current();
+        fillIfEmpty("createById", stamp.getUserId(), metaObject);
+        fillIfEmpty("createBy", stamp.getUserName(), metaObject);
+        fillIfEmpty("createTime", stamp.getTime(), metaObject);
+        fillIfEmpty("updateById", stamp.getUserId(), metaObject);
+        fillIfEmpty("updateBy", stamp.getUserName(), metaObject);
+        fillIfEmpty("updateTime", stamp.getTime(), metaObject);
+        fillIfEmpty("delFlag", DelFlagEnum.NORMAL.getCode(), metaObject);
+    }
+
+    @Override
+    public void updateFill(MetaObject metaObject) {
+        AuditStamp stamp = AuditStamp.current();
+        setFieldValByName("updateById", stamp.getUserId(), metaObject);
+        setFieldValByName("updateBy", stamp.getUserName(), metaObject);
+        setFieldValByName("updateTime", stamp.getTime(), metaObject);
+    }
+
+    private boolean hasEmpty(MetaObject metaObject, String... fieldNames) {
+        for (String fieldName : fieldNames) {
+            if (getFieldValByName(fieldName, metaObject) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void fillIfEmpty(String fieldName, Object value, MetaObject metaObject) {
+        if (getFieldValByName(fieldName, metaObject) == null) {
+            setFieldValByName(fieldName, value, metaObject);
+        }
+    }
+}
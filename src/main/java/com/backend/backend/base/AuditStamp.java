@@ -0,0 +1,113 @@
+package com.backend.backend.base;
+
+import com.backend.backend.common.Tools;
+import com.backend.backend.jwt.JwtUtil;
+import com.backend.backend.jwt.TokenContext;
+import com.backend.backend.model.entity.User;
+
+import java.util.Date;
+import java.util.function.Supplier;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 00:30
+ * @description :  审计字段的操作人和时间
+ * 一个请求或一批操作只取一次，AuditMetaObjectHandler用它填充该请求内所有写入的记录。
+ * 经过JwtFilter认证的请求第一次取时放入当前线程，JwtFilter在请求结束时清除；
+ * 没有请求上下文的任务用runAs指定操作人和时间。不可变。
+ */
+public final class AuditStamp {
+
+    private static final ThreadLocal<AuditStamp> CURRENT = new ThreadLocal<>();
+
+    private final long userId;
+    private final String userName;
+    private final Date time;
+
+    private AuditStamp(long userId, String userName, Date time) {
+        this.userId = userId;
+        this.userName = userName;
+        this.time = time;
+    }
+
+    /**
+     * 指定操作人和时间
+     *
+     * @param user 为空时记为0
+     * @param time 为空时取当前时间
+     * @return
+     */
+    public static AuditStamp of(User user, Date time) {
+        return new AuditStamp(user == null ? 0L : user.getUserId(), user == null ? "" : user.getName(),
+                time == null ? Tools.getGMT8Time() : time);
+    }
+
+    /**
+     * 当前的操作人和时间，runAs或当前请求已取过的直接返回
+     *
+     * @return
+     */
+    public static AuditStamp current() {
+        AuditStamp stamp = CURRENT.get();
+        if (stamp != null) {
+            return stamp;
+        }
+        TokenContext context = currentContext();
+        stamp = context == null ? new AuditStamp(0L, "", Tools.getGMT8Time())
+                : new AuditStamp(context.getUserId(), context.getUserName(), Tools.getGMT8Time());
+        // 只有JwtFilter管理的请求会在结束时清除，其他线程不缓存
+        if (TokenContext.current() != null) {
+            CURRENT.set(stamp);
+        }
+        return stamp;
+    }
+
+    /**
+     * 以指定的操作人和时间执行，结束后恢复
+     *
+     * @param stamp
+     * @param action
+     * @return action的返回值
+     */
+    public static <T> T runAs(AuditStamp stamp, Supplier<T> action) {
+        AuditStamp previous = CURRENT.get();
+        CURRENT.set(stamp);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 请求结束时清除
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    private static TokenContext currentContext() {
+        try {
+            return JwtUtil.getCurrentContext();
+        } catch (Exception e) {
+            // 定时任务等线程没有绑定Subject
+            return null;
+        }
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public Date getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,74 @@
+package com.backend.backend.common.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 15:40
+ * @description :  字符串布隆过滤器，线程安全
+ * 不存在的一定判断为不存在，存在的可能误判为存在；元素不能删除，需要时整体替换。
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashCount;
+
+    /**
+     * @param expectedSize 预计元素个数
+     * @param fpp          期望误判率，如0.01
+     */
+    public BloomFilter(long expectedSize, double fpp) {
+        long n = Math.max(1L, expectedSize);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.bitSize = Math.max(64L, (m + 63) / 64 * 64);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+        this.bits = new AtomicLongArray((int) (bitSize / 64));
+    }
+
+    public void put(String value) {
+        long hash64 = hash(value);
+        int h1 = (int) hash64;
+        int h2 = (int) (hash64 >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitSize;
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long old;
+            while (((old = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, old, old | mask)) {
+                // 其他线程同时修改了这个word，重试
+            }
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash64 = hash(value);
+        int h1 = (int) hash64;
+        int h2 = (int) (hash64 >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitSize;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64位FNV-1a后再做一次混合
+     */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
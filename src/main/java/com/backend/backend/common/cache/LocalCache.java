@@ -0,0 +1,177 @@
+package com.backend.backend.common.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 14:20
+ * @description :  有界、带过期时间的本地缓存
+ * 同一个key同时只有一个线程执行加载，其余线程等待其结果；记录命中、未命中和加载耗时。
+ * null值不缓存。
+ */
+public class LocalCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final Map<K, Entry<V>> cache = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+
+    /**
+     * @param maxSize   最大条数
+     * @param ttlMillis 写入后存活时间(毫秒)
+     */
+    public LocalCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 获取，不存在或已过期时调用loader加载
+     *
+     * @param key
+     * @param loader 返回null时不缓存
+     * @return
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            // 已有线程在加载，等待它的结果
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            value = loader.apply(key);
+            loadCount.increment();
+            // 加载期间被invalidate的不再写入
+            if (value != null && loading.get(key) == future) {
+                put(key, value);
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            loadFailureCount.increment();
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            totalLoadNanos.add(System.nanoTime() - start);
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * 只从缓存获取，不加载
+     *
+     * @param key
+     * @return 不存在或已过期返回null
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry = cache.get(key);
+        if (entry != null) {
+            if (entry.expireAt > System.currentTimeMillis()) {
+                hitCount.increment();
+                return entry.value;
+            }
+            cache.remove(key, entry);
+        }
+        missCount.increment();
+        return null;
+    }
+
+    public void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (cache.size() >= maxSize) {
+            evict(now);
+        }
+        cache.put(key, new Entry<>(value, now + ttlMillis));
+    }
+
+    public void invalidate(K key) {
+        loading.remove(key);
+        cache.remove(key);
+    }
+
+    public void invalidateIf(Predicate<? super K> predicate) {
+        loading.keySet().removeIf(predicate);
+        cache.keySet().removeIf(predicate);
+    }
+
+    public void invalidateAll() {
+        loading.clear();
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 统计信息
+     *
+     * @return
+     */
+    public Map<String, Object> stats() {
+        long hits = hitCount.sum();
+        long misses = missCount.sum();
+        long loads = loadCount.sum() + loadFailureCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.size());
+        stats.put("hitCount", hits);
+        stats.put("missCount", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0D : (double) hits / (hits + misses));
+        stats.put("loadCount", loadCount.sum());
+        stats.put("loadFailureCount", loadFailureCount.sum());
+        stats.put("averageLoadMillis", loads == 0 ? 0D : (double) TimeUnit.NANOSECONDS.toMicros(totalLoadNanos.sum()) / loads / 1000D);
+        return stats;
+    }
+
+    /**
+     * 先清理过期的，仍然超出则淘汰一部分
+     */
+    private void evict(long now) {
+        cache.values().removeIf(e -> e.expireAt <= now);
+        Iterator<K> iterator = cache.keySet().iterator();
+        int overflow = cache.size() - maxSize + maxSize / 10;
+        while (overflow-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expireAt;
+
+        private Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
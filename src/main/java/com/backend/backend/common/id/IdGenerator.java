@@ -0,0 +1,209 @@
+package com.backend.backend.common.id;
+
+import com.backend.backend.redis.RedisUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.backend.backend.enums.RedisEnum.ID_WORKER_LAST_PREFIX;
+import static com.backend.backend.enums.RedisEnum.ID_WORKER_LEASE_PREFIX;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 23:40
+ * @description :  全局Id生成
+ * 启动时从Redis租用一个空闲的机器Id(SET NX PX)，定时续期并记录用到的时间戳，关闭时释放；
+ * 续期失败说明租约已丢失，立即停止发号并换一个新的机器Id。启动时Redis不可用则随机取一个机器Id并记录错误。
+ * 每次租用或续期成功后，按调用前的本地时间加租期减lease-margin设置发号截止时间，
+ * Redis一直不可用时租约在Redis中过期之前就停止发号，不会与之后租到该机器Id的节点重复。
+ * 续期在独立线程中执行，不受其他定时任务耗时影响。
+ */
+@Component
+@DependsOn("redisUtil")
+public class IdGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGenerator.class);
+
+    private static final DefaultRedisScript<String> LEASE_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        LEASE_SCRIPT.setLocation(new ClassPathResource("lua/worker_id_lease.lua"));
+        LEASE_SCRIPT.setResultType(String.class);
+    }
+
+    private static volatile SnowflakeIdGenerator generator;
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+
+    private long leaseTime = 30000L;
+    private long maxAhead = 1000L;
+    private long leaseMargin = 3000L;
+
+    /**
+     * 当前租到的机器Id，-1表示没有租到
+     */
+    private volatile long leasedWorkerId = -1L;
+
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "id-worker-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${id-generator.lease-time:30000}")
+    public void setLeaseTime(long leaseTime) {
+        this.leaseTime = leaseTime;
+    }
+
+    @Value("${id-generator.max-ahead:1000}")
+    public void setMaxAhead(long maxAhead) {
+        this.maxAhead = maxAhead;
+    }
+
+    @Value("${id-generator.lease-margin:3000}")
+    public void setLeaseMargin(long leaseMargin) {
+        this.leaseMargin = leaseMargin;
+    }
+
+    /**
+     * 生成一个Id
+     *
+     * @return
+     */
+    public static long nextId() {
+        return generator().nextId();
+    }
+
+    /**
+     * 批量预留Id，批量插入时一次取够，只做一次CAS
+     *
+     * @param count
+     * @return 递增的Id
+     */
+    public static long[] nextIds(int count) {
+        return generator().nextIds(count);
+    }
+
+    /**
+     * 当前使用的机器Id
+     *
+     * @return
+     */
+    public static long workerId() {
+        return generator().getWorkerId();
+    }
+
+    private static SnowflakeIdGenerator generator() {
+        SnowflakeIdGenerator current = generator;
+        if (current == null) {
+            throw new IllegalStateException("Id生成器还未初始化");
+        }
+        return current;
+    }
+
+    @PostConstruct
+    public void init() {
+        long[] lease = acquire();
+        if (lease == null) {
+            long workerId = ThreadLocalRandom.current().nextLong(SnowflakeIdGenerator.MAX_WORKER_ID + 1);
+            logger.error("租用机器Id失败，随机使用" + workerId + "，多节点时可能重复");
+            generator = new SnowflakeIdGenerator(workerId, 0L, maxAhead);
+        } else {
+            generator = new SnowflakeIdGenerator(lease[0], lease[1], maxAhead);
+            extendLease(lease[2]);
+            logger.info("租用机器Id:" + lease[0]);
+        }
+        long interval = Math.max(1000L, leaseTime / 3);
+        heartbeat.scheduleWithFixedDelay(this::renew, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void release() {
+        heartbeat.shutdownNow();
+        long workerId = leasedWorkerId;
+        if (workerId >= 0) {
+            call("release", workerId);
+        }
+    }
+
+    /**
+     * 续期，租约已丢失或之前没有租到时重新租一个
+     */
+    private void renew() {
+        try {
+            long workerId = leasedWorkerId;
+            long start = System.nanoTime();
+            if (workerId >= 0 && "1".equals(call("renew", workerId))) {
+                extendLease(start);
+                return;
+            }
+            if (workerId >= 0) {
+                generator.expireLease();
+                logger.error("机器Id" + workerId + "的租约已丢失，停止发号并重新租用");
+            }
+            long[] lease = acquire();
+            if (lease != null) {
+                generator.changeWorkerId(lease[0], lease[1]);
+                extendLease(lease[2]);
+                logger.info("租用机器Id:" + lease[0]);
+            }
+        } catch (Exception e) {
+            logger.error("机器Id续期出现异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 租约在Redis中不早于start + leaseTime过期，提前leaseMargin停止发号，留出节点间时钟误差和max-ahead的余量
+     *
+     * @param start 租用或续期调用前的System.nanoTime()
+     */
+    private void extendLease(long start) {
+        generator.leaseUntil(start + TimeUnit.MILLISECONDS.toNanos(leaseTime - leaseMargin));
+    }
+
+    /**
+     * 从随机位置开始依次尝试租用
+     *
+     * @return {机器Id, 上次使用到的时间戳, 租用调用前的System.nanoTime()}，全部被占用或Redis不可用返回null
+     */
+    private long[] acquire() {
+        long size = SnowflakeIdGenerator.MAX_WORKER_ID + 1;
+        long start = ThreadLocalRandom.current().nextLong(size);
+        try {
+            for (long i = 0; i < size; i++) {
+                long workerId = (start + i) % size;
+                long called = System.nanoTime();
+                String last = call("acquire", workerId);
+                if (last != null) {
+                    leasedWorkerId = workerId;
+                    return new long[]{workerId, Long.parseLong(last), called};
+                }
+            }
+        } catch (Exception e) {
+            logger.error("租用机器Id出现异常:" + e.getMessage());
+        }
+        leasedWorkerId = -1L;
+        return null;
+    }
+
+    private String call(String action, long workerId) {
+        long lastTimestamp = generator == null ? 0L : generator.lastTimestamp();
+        return RedisUtil.executeForString(LEASE_SCRIPT,
+                Arrays.asList(ID_WORKER_LEASE_PREFIX.getCode() + workerId, ID_WORKER_LAST_PREFIX.getCode() + workerId),
+                action, nodeId, String.valueOf(leaseTime), String.valueOf(lastTimestamp));
+    }
+}
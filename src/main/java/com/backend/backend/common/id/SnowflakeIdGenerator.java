@@ -0,0 +1,211 @@
+package com.backend.backend.common.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 23:30
+ * @description :  无锁雪花ID生成器
+ * 结构与MybatisPlus的IdWorker相同：41位毫秒时间戳(起点相同) | 10位机器Id | 12位序列号，新旧Id整体保持递增。
+ * 时间戳和序列号合成一个计数器，与机器Id一起放在一个AtomicLong中做CAS：取max(上次+1, 当前毫秒的第一个)，
+ * 序列号用完自然进位到下一毫秒，批量预留n个Id也只需要一次CAS；发出的Id使用同一次CAS中的机器Id，更换机器Id时不会混用。
+ * 进位或时钟回拨会让计数器超前于系统时钟，超前不超过maxAheadMillis时照常发号，超过时等待时钟追上，
+ * 超过MAX_BACKWARD_MILLIS认为时钟出现了严重回拨，直接报错。
+ * 设置了租约截止时间后，超过截止时间拒绝发号，直到续期或换到新的机器Id，避免租约过期后与新租到该机器Id的节点重复。
+ */
+public class SnowflakeIdGenerator {
+
+    /**
+     * 时间戳起点，与MybatisPlus的Sequence相同
+     */
+    public static final long EPOCH = 1288834974657L;
+
+    public static final int WORKER_ID_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = WORKER_ID_BITS + SEQUENCE_BITS;
+
+    /**
+     * 计数器超前系统时钟超过这个时间(毫秒)时报错
+     */
+    private static final long MAX_BACKWARD_MILLIS = 10000L;
+
+    private static final long NO_LEASE = Long.MIN_VALUE;
+
+    /**
+     * 上一个发出的 (时间戳 << SEQUENCE_BITS | 序列号) << WORKER_ID_BITS | 机器Id，共63位
+     */
+    private final AtomicLong state;
+
+    private final long maxAheadMillis;
+
+    /**
+     * 租约截止时间(nanoTime)，没有租约限制时为NO_LEASE
+     */
+    private volatile long leaseDeadline = NO_LEASE;
+
+    /**
+     * @param workerId       机器Id，0到MAX_WORKER_ID
+     * @param lastTimestamp  该机器Id上次使用到的时间戳(毫秒，绝对时间)，不知道时传0
+     * @param maxAheadMillis 允许超前系统时钟的时间(毫秒)
+     */
+    public SnowflakeIdGenerator(long workerId, long lastTimestamp, long maxAheadMillis) {
+        checkWorkerId(workerId);
+        this.maxAheadMillis = maxAheadMillis;
+        this.state = new AtomicLong(pack(floor(lastTimestamp), workerId));
+    }
+
+    public long nextId() {
+        long reserved = reserve(1);
+        return compose(counterOf(reserved), workerIdOf(reserved));
+    }
+
+    /**
+     * 一次预留多个Id，只做一次CAS
+     *
+     * @param count 个数，不超过每毫秒序列号数 * maxAheadMillis
+     * @return 递增的Id
+     */
+    public long[] nextIds(int count) {
+        if (count <= 0) {
+            return new long[0];
+        }
+        if (count > (SEQUENCE_MASK + 1) * Math.max(1L, maxAheadMillis)) {
+            throw new IllegalArgumentException("一次预留的Id过多:" + count);
+        }
+        long reserved = reserve(count);
+        long start = counterOf(reserved);
+        long workerId = workerIdOf(reserved);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = compose(start + i, workerId);
+        }
+        return ids;
+    }
+
+    public long getWorkerId() {
+        return workerIdOf(state.get());
+    }
+
+    /**
+     * 设置租约截止时间，超过后拒绝发号
+     *
+     * @param deadlineNanos 截止时间，与nanoTime()同一基准
+     */
+    public void leaseUntil(long deadlineNanos) {
+        this.leaseDeadline = deadlineNanos;
+    }
+
+    /**
+     * 租约已丢失，立即停止发号
+     */
+    public void expireLease() {
+        this.leaseDeadline = nanoTime();
+    }
+
+    /**
+     * 取消租约限制，之后一直发号
+     */
+    public void clearLease() {
+        this.leaseDeadline = NO_LEASE;
+    }
+
+    /**
+     * 更换机器Id，之后发出的Id使用新的机器Id，计数器不回退
+     *
+     * @param workerId      新的机器Id
+     * @param lastTimestamp 新机器Id上次使用到的时间戳(毫秒，绝对时间)
+     */
+    public void changeWorkerId(long workerId, long lastTimestamp) {
+        checkWorkerId(workerId);
+        long floor = floor(lastTimestamp);
+        state.updateAndGet(current -> pack(Math.max(counterOf(current), floor), workerId));
+    }
+
+    /**
+     * 最后发出的Id所在的时间戳(毫秒，绝对时间)，用于下次使用同一机器Id时不回退
+     *
+     * @return
+     */
+    public long lastTimestamp() {
+        return (counterOf(state.get()) >>> SEQUENCE_BITS) + EPOCH;
+    }
+
+    /**
+     * 从Id中取出生成时间戳(毫秒)
+     *
+     * @param id
+     * @return
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    /**
+     * 预留count个连续的计数
+     *
+     * @return 第一个计数和预留时的机器Id，按state的格式
+     */
+    private long reserve(int count) {
+        long deadline = leaseDeadline;
+        if (deadline != NO_LEASE && nanoTime() - deadline >= 0) {
+            throw new IllegalStateException("机器Id" + getWorkerId() + "的租约已过期，拒绝生成Id");
+        }
+        while (true) {
+            long current = state.get();
+            long now = timeGen() - EPOCH;
+            long start = Math.max(counterOf(current) + 1, now << SEQUENCE_BITS);
+            long end = start + count - 1;
+            long ahead = (end >>> SEQUENCE_BITS) - now;
+            if (ahead > maxAheadMillis) {
+                if (ahead > MAX_BACKWARD_MILLIS) {
+                    throw new IllegalStateException("时钟回拨" + ahead + "毫秒，拒绝生成Id");
+                }
+                // 等待时钟追上
+                LockSupport.parkNanos((ahead - maxAheadMillis) * 1000000L);
+                continue;
+            }
+            long workerId = workerIdOf(current);
+            if (state.compareAndSet(current, pack(end, workerId))) {
+                return pack(start, workerId);
+            }
+        }
+    }
+
+    private static long compose(long count, long workerId) {
+        return ((count >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT) | (workerId << SEQUENCE_BITS) | (count & SEQUENCE_MASK);
+    }
+
+    private static long pack(long count, long workerId) {
+        return (count << WORKER_ID_BITS) | workerId;
+    }
+
+    private static long counterOf(long state) {
+        return state >>> WORKER_ID_BITS;
+    }
+
+    private static long workerIdOf(long state) {
+        return state & MAX_WORKER_ID;
+    }
+
+    private static long floor(long lastTimestamp) {
+        return Math.max(0L, lastTimestamp - EPOCH) << SEQUENCE_BITS;
+    }
+
+    protected long timeGen() {
+        return System.currentTimeMillis();
+    }
+
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private static void checkWorkerId(long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("机器Id必须在0到" + MAX_WORKER_ID + "之间");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.backend.backend.common.id;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Collections;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 23:50
+ * @description :  插入前用IdGenerator填充主键
+ * 主键类型为ID_WORKER/ID_WORKER_STR且为空时填充，已有值的不动；MybatisPlus看到主键已有值就不再用自带的IdWorker生成。
+ */
+@Intercepts(@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}))
+public class SnowflakeIdInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        Object parameter = invocation.getArgs()[1];
+        if (ms.getSqlCommandType() == SqlCommandType.INSERT && parameter != null) {
+            fill(ms, parameter, Collections.newSetFromMap(new IdentityHashMap<>()));
+        }
+        return invocation.proceed();
+    }
+
+    private void fill(MappedStatement ms, Object parameter, Set<Object> visited) {
+        if (!visited.add(parameter)) {
+            return;
+        }
+        if (parameter instanceof Map) {
+            for (Object value : ((Map<?, ?>) parameter).values()) {
+                if (value != null) {
+                    fill(ms, value, visited);
+                }
+            }
+            return;
+        }
+        if (parameter instanceof Collection) {
+            for (Object item : (Collection<?>) parameter) {
+                if (item != null) {
+                    fill(ms, item, visited);
+                }
+            }
+            return;
+        }
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(parameter.getClass());
+        if (tableInfo == null || tableInfo.getKeyProperty() == null) {
+            return;
+        }
+        IdType idType = tableInfo.getIdType();
+        if (idType != IdType.ID_WORKER && idType != IdType.ID_WORKER_STR) {
+            return;
+        }
+        MetaObject metaObject = ms.getConfiguration().newMetaObject(parameter);
+        Object id = metaObject.getValue(tableInfo.getKeyProperty());
+        if (id != null && !"".equals(id)) {
+            return;
+        }
+        long next = IdGenerator.nextId();
+        if (idType == IdType.ID_WORKER_STR || tableInfo.getKeyType() == String.class) {
+            metaObject.setValue(tableInfo.getKeyProperty(), String.valueOf(next));
+        } else if (tableInfo.getKeyType() == Integer.class || tableInfo.getKeyType() == int.class) {
+            // 雪花Id不能放进int，交给MybatisPlus处理
+            return;
+        } else {
+            metaObject.setValue(tableInfo.getKeyProperty(), next);
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof Executor ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+}
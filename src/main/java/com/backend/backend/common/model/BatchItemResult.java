@@ -0,0 +1,37 @@
+package com.backend.backend.common.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 19:50
+ * @description :  批量操作中单条的结果
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchItemResult {
+
+    /**
+     * 在请求列表中的下标
+     */
+    private int index;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long id;
+
+    private boolean success;
+
+    private String msg;
+
+    public static BatchItemResult success(int index, Long id) {
+        return new BatchItemResult(index, id, true, "操作成功！");
+    }
+
+    public static BatchItemResult fail(int index, Long id, String msg) {
+        return new BatchItemResult(index, id, false, msg);
+    }
+}
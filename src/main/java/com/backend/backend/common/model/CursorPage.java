@@ -0,0 +1,68 @@
+package com.backend.backend.common.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 17:15
+ * @description :  游标分页结果
+ * 游标对客户端不透明，传回nextCursor即可获取下一页，nextCursor为null表示没有下一页。
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPage<T> {
+
+    private static final String CURSOR_VERSION = "v1:";
+
+    private List<T> records;
+
+    private String nextCursor;
+
+    /**
+     * 是否还有下一页，未要求判断时为null
+     */
+    private Boolean hasMore;
+
+    /**
+     * 把上一页最后一条的Id编码为游标
+     *
+     * @param id
+     * @return
+     */
+    public static String encodeCursor(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_VERSION + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标
+     *
+     * @param cursor
+     * @return 为空返回null
+     * @throws IllegalArgumentException 游标不合法
+     */
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (text.startsWith(CURSOR_VERSION)) {
+                return Long.parseLong(text.substring(CURSOR_VERSION.length()));
+            }
+        } catch (IllegalArgumentException e) {
+            // 下面统一抛出
+        }
+        throw new IllegalArgumentException("分页游标不合法");
+    }
+}
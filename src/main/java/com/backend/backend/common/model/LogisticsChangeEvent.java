@@ -0,0 +1,53 @@
+package com.backend.backend.common.model;
+
+import com.backend.backend.model.entity.Logistics;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 21:20
+ * @description :  物流信息变更事件，通过Redis发布订阅发给所有节点，再推送给订阅了对应驿站或手机号的连接
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LogisticsChangeEvent {
+
+    public static final String SAVE = "SAVE";
+    public static final String UPDATE = "UPDATE";
+    public static final String DELETE = "DELETE";
+
+    /**
+     * SAVE、UPDATE、DELETE
+     */
+    private String action;
+
+    /**
+     * 变更后的记录，删除时为删除前的记录
+     */
+    private Logistics data;
+
+    /**
+     * 修改前的状态，只有UPDATE有
+     */
+    private Integer beforeType;
+
+    /**
+     * 修改前的驿站Id，只有UPDATE有，驿站变了原驿站也会收到
+     */
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long beforePostId;
+
+    /**
+     * 修改前的收件人手机号，只有UPDATE有
+     */
+    private String beforePhone;
+
+    /**
+     * 事件时间戳
+     */
+    private long time;
+}
@@ -0,0 +1,41 @@
+package com.backend.backend.common.model;
+
+import com.alibaba.excel.annotation.ExcelProperty;
+import com.alibaba.excel.metadata.BaseRowModel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 20:15
+ * @description :  快递员物流清单的excel Mode，第一行为表头
+ * 一行的内容只由上传文件中的六列决定，比较时不含BaseRowModel中的单元格样式
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@AllArgsConstructor
+@NoArgsConstructor
+public class LogisticsExcelModel extends BaseRowModel {
+    /**
+     * 按字符串读取，格式不对时只记为该行错误，不中断解析
+     */
+    @ExcelProperty(value = "状态", index = 0)
+    private String type;
+
+    @ExcelProperty(value = "产品名称", index = 1)
+    private String productName;
+
+    @ExcelProperty(value = "取件码", index = 2)
+    private String logCode;
+
+    @ExcelProperty(value = "收件人手机号", index = 3)
+    private String phone;
+
+    @ExcelProperty(value = "收货地址", index = 4)
+    private String deliveryAddress;
+
+    @ExcelProperty(value = "发货地址", index = 5)
+    private String shipAddress;
+}
@@ -0,0 +1,63 @@
+package com.backend.backend.common.model;
+
+import com.alibaba.excel.annotation.ExcelProperty;
+import com.alibaba.excel.metadata.BaseRowModel;
+import com.backend.backend.enums.LogisticsTypeEnum;
+import com.backend.backend.model.entity.Logistics;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 20:50
+ * @description :  驿站物流信息导出的excel Mode
+ * 每行由一条物流信息转换而来，比较时只看转换出的各列，不含BaseRowModel中的单元格样式
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@AllArgsConstructor
+@NoArgsConstructor
+public class LogisticsExportModel extends BaseRowModel {
+    /**
+     * 按字符串写出，超过15位的数字excel会丢失精度
+     */
+    @ExcelProperty(value = "物流Id", index = 0)
+    private String logId;
+
+    @ExcelProperty(value = "状态", index = 1)
+    private String type;
+
+    @ExcelProperty(value = "产品名称", index = 2)
+    private String productName;
+
+    @ExcelProperty(value = "取件码", index = 3)
+    private String logCode;
+
+    @ExcelProperty(value = "收件人手机号", index = 4)
+    private String phone;
+
+    @ExcelProperty(value = "收货地址", index = 5)
+    private String deliveryAddress;
+
+    @ExcelProperty(value = "发货地址", index = 6)
+    private String shipAddress;
+
+    @ExcelProperty(value = "创建时间", index = 7, format = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+
+    public static LogisticsExportModel of(Logistics logistics) {
+        LogisticsTypeEnum type = LogisticsTypeEnum.of(logistics.getType());
+        return new LogisticsExportModel(String.valueOf(logistics.getLogId()),
+                type == null ? null : type.getMsg(),
+                logistics.getProductName(),
+                logistics.getLogCode(),
+                logistics.getPhone(),
+                logistics.getDeliveryAddress(),
+                logistics.getShipAddress(),
+                logistics.getCreateTime());
+    }
+}
@@ -0,0 +1,80 @@
+package com.backend.backend.config;
+
+import com.backend.backend.datasource.ReadWriteRoutingAdvisor;
+import com.backend.backend.datasource.ReadYourWritesTracker;
+import com.backend.backend.datasource.RoutingDataSource;
+import com.backend.backend.redis.RedisUtil;
+import com.backend.backend.service.LogisticsService;
+import com.backend.backend.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.Arrays;
+
+import static com.backend.backend.enums.RedisEnum.DATASOURCE_STICKY_TOPIC;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 23:10
+ * @description :  读写分离配置，配置了spring.datasource.replica.url才生效，否则仍是单数据源
+ * 主库使用spring.datasource的配置，从库未配置的用户名、密码、驱动与主库相同。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "spring.datasource.replica", name = "url")
+public class DataSourceConfig {
+
+    @Bean
+    @Primary
+    public RoutingDataSource routingDataSource(DataSourceProperties properties,
+                                               @Value("${spring.datasource.replica.url}") String replicaUrl,
+                                               @Value("${spring.datasource.replica.username:${spring.datasource.username:}}") String replicaUsername,
+                                               @Value("${spring.datasource.replica.password:${spring.datasource.password:}}") String replicaPassword,
+                                               @Value("${spring.datasource.replica.maximum-pool-size:10}") int replicaPoolSize) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        HikariDataSource replica = new HikariDataSource();
+        replica.setPoolName("replica");
+        replica.setDriverClassName(properties.determineDriverClassName());
+        replica.setJdbcUrl(replicaUrl);
+        replica.setUsername(replicaUsername);
+        replica.setPassword(replicaPassword);
+        replica.setMaximumPoolSize(replicaPoolSize);
+        // 从库只读，误写会直接报错
+        replica.setReadOnly(true);
+        return new RoutingDataSource(primary, replica);
+    }
+
+    /**
+     * 写入通过redis发布订阅通知所有节点，判断时只查本地
+     */
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(@Value("${spring.datasource.replica.sticky-window:3000}") long window,
+                                                       RedisMessageListenerContainer listenerContainer,
+                                                       RedisTemplate<String, Object> redisTemplate) {
+        ReadYourWritesTracker tracker = new ReadYourWritesTracker(window,
+                userId -> RedisUtil.convertAndSend(DATASOURCE_STICKY_TOPIC.getCode(), userId.toString()));
+        listenerContainer.addMessageListener((message, pattern) -> {
+            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (body != null) {
+                tracker.markRemoteWrite(Long.parseLong(body.toString()));
+            }
+        }, new ChannelTopic(DATASOURCE_STICKY_TOPIC.getCode()));
+        return tracker;
+    }
+
+    /**
+     * 物流信息和用户的service按方法名读写分离
+     */
+    @Bean
+    public ReadWriteRoutingAdvisor readWriteRoutingAdvisor(ReadYourWritesTracker readYourWritesTracker) {
+        return new ReadWriteRoutingAdvisor(Arrays.asList(LogisticsService.class, UserService.class), readYourWritesTracker);
+    }
+}
@@ -1,5 +1,8 @@
 package com.backend.backend.config;
 
+import com.backend.backend.base.AuditMetaObjectHandler;
+import com.backend.backend.common.id.IdGenerator;
+import com.backend.backend.common.id.SnowflakeIdInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.PaginationInterceptor;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.context.annotation.Bean;
@@ -9,7 +12,7 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 /**
  * @Author: goodtimp
  * @Date: 2019/10/10 14:15
- * @description :  mybatisPlus配置，分页
+ * @description :  mybatisPlus配置，分页、主键生成、审计字段填充
  */
 @EnableTransactionManagement
 @Configuration
@@ -23,4 +26,20 @@ public class MybatisPlusConfig {
     public PaginationInterceptor paginationInterceptor() {
         return new PaginationInterceptor();
     }
+
+    /**
+     * 主键生成插件，参数保证IdGenerator先于插件初始化
+     */
+    @Bean
+    public SnowflakeIdInterceptor snowflakeIdInterceptor(IdGenerator idGenerator) {
+        return new SnowflakeIdInterceptor();
+    }
+
+    /**
+     * 审计字段自动填充
+     */
+    @Bean
+    public AuditMetaObjectHandler auditMetaObjectHandler() {
+        return new AuditMetaObjectHandler();
+    }
 }
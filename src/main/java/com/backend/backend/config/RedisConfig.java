@@ -1,6 +1,10 @@
 package com.backend.backend.config;
 
+import com.backend.backend.base.BaseEntity;
+import com.backend.backend.shiro.cache.RevocationFilter;
+import com.backend.backend.shiro.cache.VerifiedTokenCache;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
@@ -9,9 +13,13 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import static com.backend.backend.enums.RedisEnum.TOKEN_INVALIDATE_TOPIC;
+
 @Configuration
 @EnableCaching //开启注解
 public class RedisConfig extends CachingConfigurerSupport {
@@ -37,6 +45,8 @@ public class RedisConfig extends CachingConfigurerSupport {
         om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
         // 指定序列化输入的类型，类必须是非final修饰的，final修饰的类，比如String,Integer等会跑出异常
         om.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL);
+        // 删除标志对接口只写，存入redis的记录要保留，读出后才能判断是否已删除
+        om.addMixIn(BaseEntity.class, BaseEntityRedisMixin.class);
         jacksonSeial.setObjectMapper(om);
 
         // 值采用json序列化
@@ -107,4 +117,34 @@ public class RedisConfig extends CachingConfigurerSupport {
         return redisTemplate.opsForZSet();
     }
 
-}
\ No newline at end of file
+    /**
+     * redis发布订阅监听容器，接收其他节点发出的token失效通知
+     *
+     * @param factory
+     * @param redisTemplate
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory factory,
+                                                                       RedisTemplate<String, Object> redisTemplate) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener((message, pattern) -> {
+            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            String invalidate = body == null ? null : body.toString();
+            VerifiedTokenCache.invalidate(invalidate);
+            if (RevocationFilter.isEnabled()) {
+                RevocationFilter.revoke(invalidate, System.currentTimeMillis());
+            }
+        }, new ChannelTopic(TOKEN_INVALIDATE_TOPIC.getCode()));
+        return container;
+    }
+
+    /**
+     * 覆盖BaseEntity上只用于接口的序列化设置
+     */
+    private abstract static class BaseEntityRedisMixin {
+        @JsonProperty(access = JsonProperty.Access.READ_WRITE)
+        private Integer delFlag;
+    }
+}
@@ -0,0 +1,29 @@
+package com.backend.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 11:20
+ * @description :  定时任务线程池
+ * 默认的调度器只有一个线程，归档、对账这类长任务运行时会拖住每秒一次的撤销同步和SSE心跳。
+ * 线程数默认与定时任务个数相同，每个任务都不必等其他任务结束。
+ */
+@Configuration
+public class SchedulingConfig {
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${scheduling.pool-size:7}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduling-");
+        // 关闭时等待正在运行的任务结束
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,36 @@
+package com.backend.backend.controller;
+
+import com.backend.backend.common.model.ResponseModel;
+import com.backend.backend.datasource.RoutingDataSource;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import javax.sql.DataSource;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 23:15
+ * @description :  数据源状态
+ */
+@Api("数据源")
+@RestController
+@RequestMapping("/datasource")
+@RequiredArgsConstructor(onConstructor = @_(@Autowired))
+public class DataSourceController {
+
+    final private DataSource dataSource;
+
+    @GetMapping("/stats")
+    @ResponseBody
+    @ApiOperation(value = "连接池统计", notes = "开启读写分离时返回primary、replica各自的连接池状态（active、idle、total、waiting、max）" +
+            "和取连接次数，以及从库失败改用主库的次数；未开启时只返回主库连接池状态")
+    public ResponseModel stats() {
+        if (dataSource instanceof RoutingDataSource) {
+            return ResponseModel.success("data", ((RoutingDataSource) dataSource).stats());
+        }
+        return ResponseModel.success("data", RoutingDataSource.poolStats(dataSource));
+    }
+}
@@ -1,18 +1,35 @@
 package com.backend.backend.controller;
 
+import com.backend.backend.common.model.BatchItemResult;
+import com.backend.backend.common.model.CursorPage;
 import com.backend.backend.common.model.ResponseModel;
 import com.backend.backend.jwt.JwtUtil;
 import com.backend.backend.model.entity.Logistics;
+import com.backend.backend.model.entity.LogisticsArchive;
 import com.backend.backend.model.entity.User;
+import com.backend.backend.service.LogisticsArchiveService;
+import com.backend.backend.service.LogisticsExportService;
+import com.backend.backend.service.LogisticsImportService;
 import com.backend.backend.service.LogisticsService;
 import com.backend.backend.service.UserService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
 import java.util.List;
 import java.util.Map;
 
@@ -27,19 +44,188 @@ import java.util.Map;
 @RequiredArgsConstructor(onConstructor = @_(@Autowired))
 public class LogisticsController {
 
+    private static final Logger logger = LoggerFactory.getLogger(LogisticsController.class);
+
+    /**
+     * 流式输出时每多少条刷新一次
+     */
+    private static final int STREAM_FLUSH_ROWS = 500;
+
     final private LogisticsService logisticsServiceImpl;
 
+    final private ObjectMapper objectMapper;
+
+    final private LogisticsImportService logisticsImportServiceImpl;
+
+    final private LogisticsExportService logisticsExportServiceImpl;
+
+    final private LogisticsArchiveService logisticsArchiveServiceImpl;
+
     @GetMapping("/getList")
     @ResponseBody
-    @ApiOperation(value = "得到列表", notes = "参数：logId, type, productName, code, phone（收件人手机号）, postId（驿站Id）")
+    @ApiOperation(value = "得到列表", notes = "参数：logId, type, productName, code, phone（收件人手机号）, postId（驿站Id）, " +
+            "cursor（上一页返回的nextCursor，第一页不传）, size（每页条数，默认20最大100）, hasMore（是否判断有无下一页，默认true）。" +
+            "按logId倒序，返回data（本页列表）, nextCursor（为空表示没有下一页）, hasMore")
     public ResponseModel getList(@RequestParam(required = false) Long logId,
                                  @RequestParam(required = false) Integer type,
                                  @RequestParam(required = false) String productName,
                                  @RequestParam(required = false) String code,
                                  @RequestParam(required = false) String phone,
-                                 @RequestParam(required = false) Long postId) {
-        List<Logistics> list = logisticsServiceImpl.getList(logId, type, productName, code, phone, postId);
-        return ResponseModel.success("data", list);
+                                 @RequestParam(required = false) Long postId,
+                                 @RequestParam(required = false) String cursor,
+                                 @RequestParam(required = false) Integer size,
+                                 @RequestParam(defaultValue = "true") Boolean hasMore) {
+        CursorPage<Logistics> page = logisticsServiceImpl.getPage(logId, type, productName, code, phone, postId, cursor, size, hasMore);
+        return ResponseModel.success("data", page.getRecords())
+                .addExtend("nextCursor", page.getNextCursor())
+                .addExtend("hasMore", page.getHasMore());
+    }
+
+    @GetMapping("/archive/getList")
+    @ResponseBody
+    @ApiOperation(value = "得到已归档列表", notes = "签收较早和已删除的物流信息会移入归档，getList查不到时用这里查询。" +
+            "参数：logId, code, phone（收件人手机号）, postId（驿站Id）, cursor, size，返回格式同getList，多archiveTime（归档时间）")
+    public ResponseModel getArchiveList(@RequestParam(required = false) Long logId,
+                                        @RequestParam(required = false) String code,
+                                        @RequestParam(required = false) String phone,
+                                        @RequestParam(required = false) Long postId,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(required = false) Integer size) {
+        CursorPage<LogisticsArchive> page = logisticsArchiveServiceImpl.getPage(logId, code, phone, postId, cursor, size);
+        return ResponseModel.success("data", page.getRecords())
+                .addExtend("nextCursor", page.getNextCursor())
+                .addExtend("hasMore", page.getHasMore());
+    }
+
+    @GetMapping("/cacheStats")
+    @ResponseBody
+    @ApiOperation(value = "驿站查询缓存统计", notes = "getList按驿站查询时结果缓存的命中、未命中和加载耗时")
+    public ResponseModel cacheStats() {
+        return ResponseModel.success("data", logisticsServiceImpl.getQueryCacheStats());
+    }
+
+    @GetMapping("/search")
+    @ResponseBody
+    @ApiOperation(value = "检索", notes = "按关键词检索产品名称、收货地址、发货地址，按相关度排序。参数：keyword, postId（驿站Id，可不传）, size（默认20最大100）")
+    public ResponseModel search(@RequestParam String keyword,
+                                @RequestParam(required = false) Long postId,
+                                @RequestParam(required = false) Integer size) {
+        return ResponseModel.success("data", logisticsServiceImpl.search(keyword, postId, size));
+    }
+
+    @GetMapping("/pickup")
+    @ResponseBody
+    @ApiOperation(value = "按取件码查件", notes = "参数：postId（驿站Id）, code（取件码）")
+    public ResponseModel pickup(@RequestParam Long postId, @RequestParam String code) {
+        Logistics logistics = logisticsServiceImpl.getByPickupCode(postId, code);
+        if (logistics == null) {
+            return ResponseModel.fail("未找到该取件码对应的物流信息");
+        }
+        return ResponseModel.success("data", logistics);
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiOperation(value = "订阅物流信息变更", notes = "参数：postId（驿站Id）, phone（收件人手机号），至少一个。SSE长连接，" +
+            "事件名logistics，data为{action（SAVE、UPDATE、DELETE）, data（变更后的物流信息）, beforeType, beforePostId, beforePhone, time}。" +
+            "接收过慢会被断开，重连后请重新拉取列表")
+    public SseEmitter changes(@RequestParam(required = false) Long postId,
+                              @RequestParam(required = false) String phone) {
+        return logisticsServiceImpl.subscribeChanges(postId, phone);
+    }
+
+    @GetMapping("/changes/stats")
+    @ResponseBody
+    @ApiOperation(value = "变更推送统计", notes = "本节点的连接数、发布数、推送数、因接收过慢断开的连接数")
+    public ResponseModel changeStats() {
+        return ResponseModel.success("data", logisticsServiceImpl.getChangeFeedStats());
+    }
+
+    @GetMapping("/stats")
+    @ResponseBody
+    @ApiOperation(value = "驿站各状态数量", notes = "参数：postId（驿站Id）。返回data：{types:[{type, msg, count}], total}，" +
+            "由写入时维护的计数得到，不查数据库")
+    public ResponseModel stats(@RequestParam Long postId) {
+        return ResponseModel.success("data", logisticsServiceImpl.getStationStats(postId));
+    }
+
+    @GetMapping("/stream")
+    @ApiOperation(value = "流式得到全部列表", notes = "参数同getList，不分页，按logId倒序。" +
+            "边查询边输出，返回格式：{code, msg, extend:{data:[...], complete}}，complete在最后输出，" +
+            "为true表示data已全部输出；查询中途出错时为false并带error，缺少complete说明响应被截断")
+    public void stream(@RequestParam(required = false) Long logId,
+                       @RequestParam(required = false) Integer type,
+                       @RequestParam(required = false) String productName,
+                       @RequestParam(required = false) String code,
+                       @RequestParam(required = false) String phone,
+                       @RequestParam(required = false) Long postId,
+                       HttpServletResponse response) throws IOException {
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType("application/json; charset=utf-8");
+        ResponseModel head = ResponseModel.success();
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+        generator.writeStartObject();
+        generator.writeNumberField("code", head.getCode());
+        generator.writeStringField("msg", head.getMsg());
+        generator.writeObjectFieldStart("extend");
+        generator.writeArrayFieldStart("data");
+        long[] written = {0L};
+        boolean[] aborted = {false};
+        boolean complete = false;
+        String error = "查询中断";
+        try {
+            logisticsServiceImpl.streamList(logId, type, productName, code, phone, postId, logistics -> {
+                try {
+                    generator.writeObject(logistics);
+                    // 第一条尽快发出，之后交给缓冲区
+                    if (++written[0] == 1 || written[0] % STREAM_FLUSH_ROWS == 0) {
+                        generator.flush();
+                    }
+                    return true;
+                } catch (IOException e) {
+                    // 客户端断开，停止查询
+                    logger.warn("流式输出物流列表中断:" + e.getMessage());
+                    aborted[0] = true;
+                    return false;
+                }
+            });
+            complete = !aborted[0];
+        } catch (RuntimeException e) {
+            // 已经输出了一部分，不能再改状态码，在结尾标明未完成
+            logger.error("流式查询物流列表出现异常:" + e.getMessage());
+            error = "查询中断，已输出" + written[0] + "条";
+        } finally {
+            // 客户端已断开时不再输出，它收到的是不完整的json
+            if (!aborted[0]) {
+                generator.writeEndArray();
+                generator.writeBooleanField("complete", complete);
+                if (!complete) {
+                    generator.writeStringField("error", error);
+                }
+                generator.writeEndObject();
+                generator.writeEndObject();
+                generator.close();
+            }
+        }
+    }
+
+    @GetMapping("/export")
+    @ApiOperation(value = "导出驿站物流信息", notes = "参数：postId（驿站Id）, type（状态，不传导出全部）。按logId倒序导出为xlsx，" +
+            "同时导出的任务有上限，超过时返回失败")
+    public void export(@RequestParam Long postId,
+                       @RequestParam(required = false) Integer type,
+                       HttpServletResponse response) {
+        long count = logisticsExportServiceImpl.export(postId, type, () -> {
+            try {
+                response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+                response.setCharacterEncoding("UTF-8");
+                response.setHeader("Content-Disposition", "attachment;filename=" +
+                        URLEncoder.encode("物流信息_" + postId, "UTF-8") + ".xlsx");
+                return response.getOutputStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        logger.info("导出驿站" + postId + "物流信息" + (count < 0 ? "中断" : count + "条"));
     }
 
     @ApiOperation(value = "新增", notes = "新增物流:参数示例：{ type:1(等待揽件 2运输中 3已签收), productName:'产品名称', logCode:'取件码', phone:'1231'（收件人手机号）, " +
@@ -54,9 +240,54 @@ public class LogisticsController {
         return ResponseModel.success("新增成功").addExtend("data",logistics);
     }
 
+    @ApiOperation(value = "批量新增", notes = "参数为新增的参数数组，一次最多1000条，全部成功或全部失败。" +
+            "返回data为每条的结果：{index（下标）, id（logId）, success, msg}")
+    @PostMapping("/saveBatch")
+    @ResponseBody
+    public ResponseModel saveBatch(@RequestBody List<Logistics> list) {
+        return batchResponse(logisticsServiceImpl.saveLogisticsBatch(list));
+    }
+
+    @ApiOperation(value = "批量更新", notes = "参数为更新的参数数组，一次最多1000条，logId为空或不存在的单独失败；" +
+            "修改状态只允许 1等待揽件→2运输中→3已签收，不允许的或状态已被其他请求修改的单独失败。" +
+            "返回data为每条的结果：{index（下标）, id（logId）, success, msg}")
+    @PostMapping("/updateBatch")
+    @ResponseBody
+    public ResponseModel updateBatch(@RequestBody List<Logistics> list) {
+        return batchResponse(logisticsServiceImpl.updateLogisticsBatch(list));
+    }
+
+    @ApiOperation(value = "导入物流清单", notes = "参数：file（.xlsx或.xls文件，第一行为表头，列依次为：状态(1等待揽件 2运输中 3已签收), " +
+            "产品名称, 取件码, 收件人手机号, 收货地址, 发货地址）, postId（驿站Id）。异步导入，返回jobId，用/import/{jobId}查询进度")
+    @PostMapping("/import")
+    @ResponseBody
+    public ResponseModel importManifest(@RequestParam MultipartFile file, @RequestParam Long postId) {
+        return ResponseModel.success("jobId", logisticsImportServiceImpl.submit(file, postId));
+    }
+
+    @ApiOperation(value = "导入进度", notes = "返回data：{status（WAITING、RUNNING、DONE、FAILED）, read（已读行数）, success, failed, " +
+            "errors（错误明细，最多100条）}，任务保留一天")
+    @GetMapping("/import/{jobId}")
+    @ResponseBody
+    public ResponseModel importProgress(@PathVariable String jobId) {
+        Map<String, Object> progress = logisticsImportServiceImpl.getProgress(jobId);
+        if (progress == null) {
+            return ResponseModel.fail("导入任务不存在或已过期");
+        }
+        return ResponseModel.success("data", progress);
+    }
+
+    private static ResponseModel batchResponse(List<BatchItemResult> results) {
+        long successCount = results.stream().filter(BatchItemResult::isSuccess).count();
+        return ResponseModel.success("data", results)
+                .addExtend("successCount", successCount)
+                .addExtend("failCount", results.size() - successCount);
+    }
+
     @ApiOperation(value = "更新", notes = "修改:参数示例：{logId:'123'," +
             "          type:1(等待揽件 2运输中 3已签收), productName:'产品名称', logCode:'取件码', phone:'1231'（收件人手机号）, " +
-            "      postId:'123'（驿站Id）,deliveryAddress:'收货地址',ship_address:'发货地址'}")
+            "      postId:'123'（驿站Id）,deliveryAddress:'收货地址',ship_address:'发货地址'}。" +
+            "修改状态只允许 1等待揽件→2运输中→3已签收，状态已被其他请求修改时失败")
     @PostMapping("/update")
     @ResponseBody
     public ResponseModel update(@RequestBody Logistics logistics) {
@@ -67,6 +298,41 @@ public class LogisticsController {
         return ResponseModel.success("修改成功").addExtend("data",logistics);
     }
 
+    @ApiOperation(value = "修改状态、备注", notes = "参数示例：{logId:'123', type:2, remark:'备注'}，type和remark至少一个。" +
+            "修改状态按流转表检查并同步写库；只修改备注时开启延迟写则先合并在内存中，稍后批量写库，查询结果会带上未写库的修改")
+    @PostMapping("/updateStatus")
+    @ResponseBody
+    public ResponseModel updateStatus(@RequestBody Map<String, String> map) {
+        String type = map.get("type");
+        boolean success = logisticsServiceImpl.updateLogisticsStatus(Long.parseLong(map.get("logId")),
+                type == null ? null : Integer.valueOf(type), map.get("remark"));
+        if (!success) {
+            return ResponseModel.fail("修改失败");
+        }
+        return ResponseModel.success("修改成功");
+    }
+
+    @ApiOperation(value = "延迟写统计", notes = "返回data：{enabled, pending（未写库的logId数）, offered, coalesced（被合并的次数）, " +
+            "rejected（缓存满改为同步写的次数）, written, failures}")
+    @GetMapping("/writeBehind/stats")
+    @ResponseBody
+    public ResponseModel writeBehindStats() {
+        return ResponseModel.success("data", logisticsServiceImpl.getWriteBehindStats());
+    }
+
+    @ApiOperation(value = "状态流转", notes = "参数示例：{logId:'123', from:2（当前状态）, to:3（新状态）}，" +
+            "只允许 1等待揽件→2运输中→3已签收。当前状态已不是from时返回失败，code为409，需重新获取后再操作")
+    @PostMapping("/transit")
+    @ResponseBody
+    public ResponseModel transit(@RequestBody Map<String, String> map) {
+        Logistics logistics = logisticsServiceImpl.transitLogistics(Long.parseLong(map.get("logId")),
+                Integer.valueOf(map.get("from")), Integer.valueOf(map.get("to")));
+        if (logistics == null) {
+            return ResponseModel.fail(HttpStatus.CONFLICT.value(), "状态已变更或物流信息不存在");
+        }
+        return ResponseModel.success("修改成功").addExtend("data", logistics);
+    }
+
     @ApiOperation(value = "删除", notes = "修改:参数示例：{id:'123'}")
     @PostMapping("/delete")
     @ResponseBody
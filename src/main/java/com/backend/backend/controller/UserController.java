@@ -40,6 +40,13 @@ public class UserController {
         return ResponseModel.success("data", user);
     }
 
+    @GetMapping("/cacheStats")
+    @ResponseBody
+    @ApiOperation(value = "用户缓存统计", notes = "本地缓存、redis缓存的命中和数据库加载耗时")
+    public ResponseModel cacheStats() {
+        return ResponseModel.success("data", userServiceImpl.getCacheStats());
+    }
+
     @ApiOperation(value = "注册", notes = "注册用户 参数示例：{\n" +
             "\t\"username\":\"goodtimp\",\n" +
             "\t\"password\":\"123456\"\n" +
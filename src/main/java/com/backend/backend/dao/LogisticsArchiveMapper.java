@@ -0,0 +1,59 @@
+package com.backend.backend.dao;
+
+import com.backend.backend.model.entity.LogisticsArchive;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 22:10
+ * @description :  已归档的物流信息，以及从logistics移入归档表
+ */
+public interface LogisticsArchiveMapper extends BaseMapper<LogisticsArchive> {
+
+    String COLUMNS = "log_id, type, product_name, log_code, post_id, delivery_address, ship_address, phone, " +
+            "del_flag, create_by, create_by_id, create_time, update_by, update_by_id, update_time, remark";
+
+    String IDS = "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>";
+
+    /**
+     * 锁定仍满足归档条件的记录，在事务中调用
+     *
+     * @param ids          候选的logId
+     * @param deleted      已删除的delFlag
+     * @param signed       已签收的type
+     * @param signedBefore 签收(最后修改)早于该时间的才归档
+     * @return 锁定的logId
+     */
+    @Select("<script>SELECT log_id FROM logistics WHERE log_id IN " + IDS +
+            " AND (del_flag = #{deleted} OR (type = #{signed} AND update_time &lt; #{signedBefore})) FOR UPDATE</script>")
+    List<Long> lockArchivable(@Param("ids") Collection<Long> ids, @Param("deleted") int deleted,
+                              @Param("signed") int signed, @Param("signedBefore") Date signedBefore);
+
+    /**
+     * 复制到归档表，已存在的覆盖
+     *
+     * @param ids         已锁定的logId
+     * @param archiveTime 归档时间
+     * @return
+     */
+    @Insert("<script>REPLACE INTO logistics_archive (" + COLUMNS + ", archive_time) SELECT " + COLUMNS +
+            ", #{archiveTime} FROM logistics WHERE log_id IN " + IDS + "</script>")
+    int copyFromLogistics(@Param("ids") Collection<Long> ids, @Param("archiveTime") Date archiveTime);
+
+    /**
+     * 从logistics中删除已复制到归档表的记录
+     *
+     * @param ids 已锁定的logId
+     * @return
+     */
+    @Delete("<script>DELETE FROM logistics WHERE log_id IN " + IDS + "</script>")
+    int deleteFromLogistics(@Param("ids") Collection<Long> ids);
+}
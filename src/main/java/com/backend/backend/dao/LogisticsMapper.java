@@ -1,7 +1,18 @@
 package com.backend.backend.dao;
 
 import com.backend.backend.model.entity.Logistics;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.Date;
 
 /**
  * @Author: goodtimp
@@ -9,4 +20,35 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  * @description :  物流信息
  */
 public interface LogisticsMapper extends BaseMapper<Logistics> {
+
+    /**
+     * 流式查询，每读到一行调用一次handler，不在内存中保存整个结果集
+     * fetchSize为Integer.MIN_VALUE时MySQL驱动逐行读取
+     *
+     * @param wrapper 查询条件
+     * @param handler
+     */
+    @Select("SELECT * FROM logistics ${ew.customSqlSegment}")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(Logistics.class)
+    void streamList(@Param(Constants.WRAPPER) Wrapper<Logistics> wrapper, ResultHandler<Logistics> handler);
+
+    /**
+     * 状态流转，当前状态为from且未删除时才修改，一条语句完成判断和修改
+     *
+     * @param logId
+     * @param from       期望的当前状态
+     * @param to         新状态
+     * @param delFlag    未删除的标志，DelFlagEnum.NORMAL
+     * @param updateById 操作人Id
+     * @param updateBy   操作人名称
+     * @param updateTime 修改时间
+     * @return 影响行数，0表示状态已被修改或记录不存在
+     */
+    @Update("UPDATE logistics SET type = #{to}, update_by_id = #{updateById}, update_by = #{updateBy}, update_time = #{updateTime} " +
+            "WHERE log_id = #{logId} AND type = #{from} AND del_flag = #{delFlag}")
+    int transitType(@Param("logId") Long logId, @Param("from") Integer from, @Param("to") Integer to,
+                    @Param("delFlag") Integer delFlag,
+                    @Param("updateById") Long updateById, @Param("updateBy") String updateBy,
+                    @Param("updateTime") Date updateTime);
 }
@@ -0,0 +1,60 @@
+package com.backend.backend.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 22:50
+ * @description :  读写分离的路由，当前线程使用哪个数据源
+ */
+public enum DataSourceRoute {
+    /**
+     * 主库，写和需要读到最新数据的读
+     */
+    PRIMARY,
+    /**
+     * 从库，允许有复制延迟的读
+     */
+    REPLICA;
+
+    private static final ThreadLocal<DataSourceRoute> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 当前线程的路由，没有设置时为null，按主库处理
+     *
+     * @return
+     */
+    public static DataSourceRoute current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 设置当前线程的路由
+     *
+     * @param route 为null时清除
+     */
+    public static void set(DataSourceRoute route) {
+        if (route == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(route);
+        }
+    }
+
+    /**
+     * 在主库上执行，结束后恢复原来的路由
+     * 结果会被其他请求共享时使用(例如写入缓存)，避免把从库上的旧数据共享给刚写过数据的用户
+     *
+     * @param action
+     * @return action的结果
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        DataSourceRoute previous = current();
+        set(PRIMARY);
+        try {
+            return action.get();
+        } finally {
+            set(previous);
+        }
+    }
+}
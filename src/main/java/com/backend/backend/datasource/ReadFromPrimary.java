@@ -0,0 +1,15 @@
+package com.backend.backend.datasource;
+
+import java.lang.annotation.*;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 10:20
+ * @description :  标记的读方法总是走主库
+ * 用于未登录时的读，例如注册后马上登录按用户名查询，此时没有用户Id，无法按刚写过数据判断。
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadFromPrimary {
+}
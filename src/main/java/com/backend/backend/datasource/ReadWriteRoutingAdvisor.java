@@ -0,0 +1,94 @@
+package com.backend.backend.datasource;
+
+import com.backend.backend.jwt.TokenContext;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 23:05
+ * @description :  按service方法设置读写分离的路由
+ * 指定的service接口中，方法名以READ_PREFIXES开头的是读，走从库；其他方法是写，走主库，成功后记录当前用户刚写过数据。
+ * 以下情况读也走主库：标记了ReadFromPrimary、已在事务中、外层方法已经走主库、当前用户刚写过数据。
+ * 在事务拦截器之前执行，事务开始取连接时路由已经确定。
+ */
+public class ReadWriteRoutingAdvisor extends StaticMethodMatcherPointcutAdvisor {
+
+    private static final List<String> READ_PREFIXES = Arrays.asList("get", "list", "search", "stream", "count", "page");
+
+    private final List<Class<?>> serviceTypes;
+    private final ReadYourWritesTracker tracker;
+
+    public ReadWriteRoutingAdvisor(List<Class<?>> serviceTypes, ReadYourWritesTracker tracker) {
+        this.serviceTypes = serviceTypes;
+        this.tracker = tracker;
+        setOrder(Ordered.HIGHEST_PRECEDENCE);
+        setAdvice((MethodInterceptor) this::route);
+    }
+
+    @Override
+    public boolean matches(Method method, Class<?> targetClass) {
+        if (method.getDeclaringClass() == Object.class) {
+            return false;
+        }
+        for (Class<?> serviceType : serviceTypes) {
+            if (serviceType.isAssignableFrom(targetClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Object route(MethodInvocation invocation) throws Throwable {
+        DataSourceRoute previous = DataSourceRoute.current();
+        boolean read = isRead(invocation.getMethod());
+        Long userId = currentUserId();
+        DataSourceRoute route;
+        if (!read || previous == DataSourceRoute.PRIMARY
+                || AnnotationUtils.findAnnotation(invocation.getMethod(), ReadFromPrimary.class) != null
+                || TransactionSynchronizationManager.isActualTransactionActive()
+                || tracker.recentlyWrote(userId)) {
+            route = DataSourceRoute.PRIMARY;
+        } else {
+            route = DataSourceRoute.REPLICA;
+        }
+        DataSourceRoute.set(route);
+        try {
+            Object result = invocation.proceed();
+            if (!read) {
+                tracker.markWrite(userId);
+            }
+            return result;
+        } finally {
+            DataSourceRoute.set(previous);
+        }
+    }
+
+    private static boolean isRead(Method method) {
+        String name = method.getName();
+        for (String prefix : READ_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 当前登录用户的Id，未登录返回null
+     *
+     * @return
+     */
+    protected Long currentUserId() {
+        TokenContext context = TokenContext.current();
+        return context == null ? null : context.getUserId();
+    }
+}
@@ -0,0 +1,83 @@
+package com.backend.backend.datasource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 22:55
+ * @description :  记录刚写过数据的用户
+ * 用户写入后的一段时间内，他的读请求走主库，保证能读到自己刚写的数据，不受从库复制延迟影响。
+ * 记录只在内存中，判断时不访问Redis；写入时通过broadcaster通知其他节点，
+ * 其他节点收到后调用markRemoteWrite记录，请求被负载均衡到其他节点时也能判断。
+ */
+public class ReadYourWritesTracker {
+
+    private final Map<Long, Long> localWrites = new ConcurrentHashMap<>();
+
+    /**
+     * 写入后读主库的时间(毫秒)，应大于从库的复制延迟
+     */
+    private final long window;
+
+    /**
+     * 把写入的用户Id通知所有节点
+     */
+    private final Consumer<Long> broadcaster;
+
+    public ReadYourWritesTracker(long window, Consumer<Long> broadcaster) {
+        this.window = window;
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * 记录本节点上用户的一次写入，并通知其他节点
+     *
+     * @param userId
+     */
+    public void markWrite(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        markRemoteWrite(userId);
+        broadcaster.accept(userId);
+    }
+
+    /**
+     * 记录其他节点通知的写入，从收到时开始计算时间，不受节点间时钟差影响
+     *
+     * @param userId
+     */
+    public void markRemoteWrite(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        localWrites.put(userId, now + window);
+        if (localWrites.size() > 10000) {
+            localWrites.values().removeIf(until -> until <= now);
+        }
+    }
+
+    /**
+     * 用户是否刚写过数据
+     *
+     * @param userId
+     * @return
+     */
+    public boolean recentlyWrote(Long userId) {
+        if (userId == null) {
+            return false;
+        }
+        Long until = localWrites.get(userId);
+        if (until == null) {
+            return false;
+        }
+        if (until > System.currentTimeMillis()) {
+            return true;
+        }
+        localWrites.remove(userId, until);
+        return false;
+    }
+}
@@ -0,0 +1,124 @@
+package com.backend.backend.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 23:00
+ * @description :  读写分离数据源
+ * 按当前线程的DataSourceRoute选择主库或从库，未设置时走主库；从库取连接失败时退回主库。
+ * 每个路由一个连接池，统计各自的取连接次数和连接池状态。
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingDataSource.class);
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+
+    private final Map<DataSourceRoute, LongAdder> connectionCounts = new EnumMap<>(DataSourceRoute.class);
+    private final LongAdder replicaFailureCount = new LongAdder();
+
+    public RoutingDataSource(HikariDataSource primary, HikariDataSource replica) {
+        this.primary = primary;
+        this.replica = replica;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DataSourceRoute.PRIMARY, primary);
+        targets.put(DataSourceRoute.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        for (DataSourceRoute route : DataSourceRoute.values()) {
+            connectionCounts.put(route, new LongAdder());
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        DataSourceRoute route = DataSourceRoute.current();
+        return route == null ? DataSourceRoute.PRIMARY : route;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (determineCurrentLookupKey() == DataSourceRoute.REPLICA) {
+            try {
+                Connection connection = replica.getConnection();
+                connectionCounts.get(DataSourceRoute.REPLICA).increment();
+                return connection;
+            } catch (SQLException e) {
+                replicaFailureCount.increment();
+                logger.warn("从库获取连接失败，改用主库:" + e.getMessage());
+            }
+        }
+        Connection connection = primary.getConnection();
+        connectionCounts.get(DataSourceRoute.PRIMARY).increment();
+        return connection;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        connectionCounts.get(DataSourceRoute.PRIMARY).increment();
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * 各路由的取连接次数和连接池状态
+     *
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (DataSourceRoute route : DataSourceRoute.values()) {
+            Map<String, Object> routeStats = poolStats(route == DataSourceRoute.PRIMARY ? primary : replica);
+            routeStats.put("connections", connectionCounts.get(route).sum());
+            stats.put(route.name().toLowerCase(), routeStats);
+        }
+        stats.put("replicaFailures", replicaFailureCount.sum());
+        return stats;
+    }
+
+    /**
+     * 连接池状态，不是Hikari连接池时只有名称
+     *
+     * @param dataSource
+     * @return active 使用中, idle 空闲, total 总数, waiting 等待连接的线程数, max 最大连接数
+     */
+    public static Map<String, Object> poolStats(DataSource dataSource) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        if (!(dataSource instanceof HikariDataSource)) {
+            stats.put("pool", dataSource.getClass().getSimpleName());
+            return stats;
+        }
+        HikariDataSource hikari = (HikariDataSource) dataSource;
+        stats.put("pool", hikari.getPoolName());
+        HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+        if (pool != null) {
+            stats.put("active", pool.getActiveConnections());
+            stats.put("idle", pool.getIdleConnections());
+            stats.put("total", pool.getTotalConnections());
+            stats.put("waiting", pool.getThreadsAwaitingConnection());
+        }
+        stats.put("max", hikari.getMaximumPoolSize());
+        return stats;
+    }
+
+    @Override
+    public void destroy() {
+        replica.close();
+        primary.close();
+    }
+}
@@ -0,0 +1,75 @@
+package com.backend.backend.enums;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 20:10
+ * @description :  物流状态
+ * TRANSITIONS声明允许的状态流转，状态修改只能按表中的方向进行
+ */
+@Getter
+public enum LogisticsTypeEnum {
+    WAITING(1, "等待揽件"),
+    IN_TRANSIT(2, "运输中"),
+    SIGNED(3, "已签收");
+
+    private static final Map<LogisticsTypeEnum, Set<LogisticsTypeEnum>> TRANSITIONS = new EnumMap<>(LogisticsTypeEnum.class);
+
+    static {
+        TRANSITIONS.put(WAITING, EnumSet.of(IN_TRANSIT));
+        TRANSITIONS.put(IN_TRANSIT, EnumSet.of(SIGNED));
+        TRANSITIONS.put(SIGNED, EnumSet.noneOf(LogisticsTypeEnum.class));
+    }
+
+    private int code;
+    private String msg;
+
+    LogisticsTypeEnum(int code, String msg) {
+        this.code = code;
+        this.msg = msg;
+    }
+
+    /**
+     * 通过code获取
+     *
+     * @param code
+     * @return 不存在返回null
+     */
+    public static LogisticsTypeEnum of(Integer code) {
+        if (code == null) {
+            return null;
+        }
+        for (LogisticsTypeEnum type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 能否从当前状态流转到to
+     *
+     * @param to
+     * @return
+     */
+    public boolean canTransitTo(LogisticsTypeEnum to) {
+        return to != null && TRANSITIONS.get(this).contains(to);
+    }
+
+    /**
+     * 当前状态可以流转到的状态
+     *
+     * @return
+     */
+    public Set<LogisticsTypeEnum> nextTypes() {
+        return Collections.unmodifiableSet(TRANSITIONS.get(this));
+    }
+}
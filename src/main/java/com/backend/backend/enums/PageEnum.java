@@ -0,0 +1,35 @@
+package com.backend.backend.enums;
+
+import lombok.Getter;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 17:10
+ * @description :  分页
+ */
+@Getter
+public enum PageEnum {
+    DEFAULT_SIZE(20, "默认每页条数"),
+    MAX_SIZE(100, "每页最大条数");
+
+    private int code;
+    private String msg;
+
+    PageEnum(int code, String msg) {
+        this.code = code;
+        this.msg = msg;
+    }
+
+    /**
+     * 限制每页条数，为空或不合法时使用默认值
+     *
+     * @param size
+     * @return
+     */
+    public static int limit(Integer size) {
+        if (size == null || size <= 0) {
+            return DEFAULT_SIZE.getCode();
+        }
+        return Math.min(size, MAX_SIZE.getCode());
+    }
+}
@@ -14,7 +14,22 @@ public enum RedisEnum {
     SHIRO_CACHE_PREFIX("shiro缓存的前缀", "shiro:cache:"),
     PERMISSION_HASH_MAP("权限的hashMap的key值", "sys_permission"),
     ROLE_HASH_MAP("角色的hashMap的key值", "sys_role"),
-    ROLE_PERMISSION_RELATION_HASH_MAP("角色权限对应表的key值", "relation_role:permission:");
+    ROLE_PERMISSION_RELATION_HASH_MAP("角色权限对应表的key值", "relation_role:permission:"),
+    TOKEN_INVALIDATE_TOPIC("token失效通知的发布订阅频道", "channel:token:invalidate"),
+    TOKEN_REVOCATION_LOG("token撤销记录的有序集合(分数为撤销时间)", "token:revocation:log"),
+    PICKUP_CODE_INDEX_PREFIX("取件码索引的前缀，后接驿站Id", "index:pickup:"),
+    IMPORT_JOB_PREFIX("物流清单导入任务进度的前缀，后接任务Id", "job:import:"),
+    ARCHIVE_JOB_LOCK("物流归档任务的锁，同一时间只有一个节点执行", "job:archive:lock"),
+    ID_WORKER_LEASE_PREFIX("雪花Id机器Id租约的前缀，后接机器Id", "id:worker:lease:"),
+    ID_WORKER_LAST_PREFIX("雪花Id机器Id上次使用到的时间戳的前缀，后接机器Id", "id:worker:last:"),
+    LOGISTICS_SEARCH_INDEX_PREFIX("物流检索n-gram倒排索引的前缀", "index:search:"),
+    LOGISTICS_VERSION_PREFIX("驿站物流数据版本号的前缀，后接驿站Id", "cache:logistics:version:"),
+    LOGISTICS_CHANGE_TOPIC("物流信息变更事件的发布订阅频道", "channel:logistics:change"),
+    STATION_STATS_PREFIX("驿站各状态物流数量的前缀，后接驿站Id", "stats:logistics:"),
+    DATASOURCE_STICKY_TOPIC("读写分离中用户写入通知的发布订阅频道", "channel:datasource:sticky"),
+    USER_CACHE_PREFIX("用户缓存的前缀", "cache:user:"),
+    USER_CACHE_VERSION_PREFIX("用户缓存版本号的前缀，后接用户Id，每次清除加一", "cache:user:version:"),
+    USER_CACHE_EVICT_TOPIC("用户缓存失效通知的发布订阅频道", "channel:cache:user:evict");
     private String name;
     private String code;
 
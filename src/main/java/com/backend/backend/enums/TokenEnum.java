@@ -20,7 +20,12 @@ public enum TokenEnum {
     ENCRYPT_REFRESH_JWT_KEY("refreshToken认证加密私钥(Base64加密)后的值", "JXU3MjMxJXU0RjYwJXU1NTRBJXU1OTBGJXU2OEE2JXU2NUNC"),
     SHIRO_CACHE_EXPIRE_TIME("Shiro缓存过期时间-5V分钟-5*60(秒为单位)(一般设置与AccessToken过期时间一致)", "1800"),
     SHIRO_CACHE_DELETE_TOKEN_PREFIX("删除refreshToken后的token前缀", "token:"),
-    SHIRO_CACHE_DELETE_TOKEN_EXPIRE_TIME("删除refreshToken后的token存在时间", "10000");
+    SHIRO_CACHE_DELETE_TOKEN_EXPIRE_TIME("删除refreshToken后的token存在时间", "10000"),
+    VERIFIED_TOKEN_CACHE_SIZE("本地已验证token缓存的最大条数", "10000"),
+    JWT_ALGORITHM_CACHE_SIZE("每个用户签名算法和校验器缓存的最大条数", "10000"),
+    REVOCATION_BLOOM_SIZE("本地撤销布隆过滤器每一代的预计条数", "100000"),
+    REVOCATION_RECENT_WINDOW("本地保留精确撤销记录的时间(s)", "300"),
+    REVOCATION_CLOCK_SKEW("节点间时钟误差容忍(ms)", "5000");
     private String name;
     private String code;
 
@@ -3,6 +3,7 @@ package com.backend.backend.jwt;
 import com.alibaba.fastjson.JSONObject;
 import com.auth0.jwt.exceptions.SignatureVerificationException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.backend.backend.base.AuditStamp;
 import com.backend.backend.common.model.ResponseModel;
 import com.backend.backend.exception.TokenException;
 import org.apache.shiro.web.filter.authc.BasicHttpAuthenticationFilter;
@@ -37,6 +38,11 @@ public class JwtFilter extends BasicHttpAuthenticationFilter {
      */
     private static final Logger logger = LoggerFactory.getLogger(JwtFilter.class);
 
+    /**
+     * 解析后的token在request中的属性名
+     */
+    private static final String TOKEN_CONTEXT_ATTRIBUTE = TokenContext.class.getName();
+
     /**
      * 这里我们详细说明下为什么最终返回的都是true，即允许访问
      * 例如我们提供一个地址 GET /article
@@ -123,14 +129,26 @@ public class JwtFilter extends BasicHttpAuthenticationFilter {
      */
     @Override
     protected boolean executeLogin(ServletRequest request, ServletResponse response) throws Exception {
-        // 拿到当前Header中Authorization的AccessToken(Shiro中getAuthzHeader方法已经实现)
-        JwtToken token = new JwtToken(this.getAuthzHeader(request));
+        // 拿到当前Header中Authorization的AccessToken(Shiro中getAuthzHeader方法已经实现)，整个请求只解析这一次
+        TokenContext context = TokenContext.parse(this.getAuthzHeader(request));
+        request.setAttribute(TOKEN_CONTEXT_ATTRIBUTE, context);
         // 提交给UserRealm进行认证，如果错误他会抛出异常并被捕获
-        this.getSubject(request, response).login(token);
-        // 如果没有抛出异常则代表登入成功，返回true
+        this.getSubject(request, response).login(new JwtToken(context));
+        // 如果没有抛出异常则代表登入成功，发布到当前线程，返回true
+        TokenContext.set(context);
         return true;
     }
 
+    /**
+     * 请求结束清除当前线程的token上下文和审计操作人
+     */
+    @Override
+    public void afterCompletion(ServletRequest request, ServletResponse response, Exception exception) throws Exception {
+        TokenContext.clear();
+        AuditStamp.clear();
+        super.afterCompletion(request, response, exception);
+    }
+
     /**
      * 对跨域提供支持
      */
@@ -157,15 +175,14 @@ public class JwtFilter extends BasicHttpAuthenticationFilter {
      * @return
      */
     private boolean refreshToken(ServletRequest request, ServletResponse response) {
-        // 拿到当前Header中Authorization的AccessToken(Shiro中getAuthzHeader方法已经实现)
-        String token = this.getAuthzHeader(request);
-        // 获取当前Token的帐号信息
-        String userId = JwtUtil.getClaim(token, PAYLOAD_USER_ID_TAG.getCode());
-        String type = JwtUtil.getClaim(token, PAYLOAD_USER_TYPE_TAG.getCode());
-        String name = JwtUtil.getClaim(token, PAYLOAD_USER_NAME_TAG.getCode());
-        // 判断Redis中RefreshToken是否存在是否与传入的token匹配
-
-        if (JwtUtil.judgeRefreshToken(token)) {
+        // executeLogin中已经解析过的token，没有则从Header中Authorization解析
+        TokenContext context = (TokenContext) request.getAttribute(TOKEN_CONTEXT_ATTRIBUTE);
+        if (context == null) {
+            context = TokenContext.parse(this.getAuthzHeader(request));
+        }
+        String token;
+        // 刷新前校验签名（允许已过期），每个请求都要校验
+        if (JwtUtil.verifyForRefresh(context)) {
             // -----  单点登陆需要
             // 获取当前最新时间戳
 //            String currentTimeMillis = String.valueOf(System.currentTimeMillis());
@@ -176,11 +193,16 @@ public class JwtFilter extends BasicHttpAuthenticationFilter {
 //            token = JwtUtil.sign(userId, name, currentTimeMillis);
 
             // ----非单点登录直接重新返回token 不刷新refreshToken
-            token = JwtUtil.signAndIssueToken(userId, name, type, token);
+            // 判断Redis中RefreshToken是否存在并签发，同一次登录的并发请求只刷新一次
+            token = JwtUtil.refreshAccessToken(context);
+            if (token == null) {
+                return false;
+            }
             // 将新刷新的AccessToken再次进行Shiro的登录
-            JwtToken jwtToken = new JwtToken(token);
+            TokenContext newContext = TokenContext.parse(token);
             // 提交给UserRealm进行认证，如果错误他会抛出异常并被捕获，如果没有抛出异常则代表登入成功，返回true
-            this.getSubject(request, response).login(jwtToken);
+            this.getSubject(request, response).login(new JwtToken(newContext));
+            TokenContext.set(newContext);
             // 最后将刷新的AccessToken存放在Response的Header中的Authorization字段返回
             HttpServletResponse httpServletResponse = WebUtils.toHttp(response);
             httpServletResponse.setHeader("Authorization", token);
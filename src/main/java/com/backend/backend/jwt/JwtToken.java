@@ -10,10 +10,27 @@ import org.apache.shiro.authc.AuthenticationToken;
 public class JwtToken implements AuthenticationToken {
     private String token;
 
+    /**
+     * 解析后的token，认证过程中复用，避免重复decode
+     */
+    private TokenContext context;
+
     public JwtToken(String token) {
         this.token = token;
     }
 
+    public JwtToken(TokenContext context) {
+        this.token = context.getToken();
+        this.context = context;
+    }
+
+    public TokenContext getContext() {
+        if (context == null) {
+            context = TokenContext.parse(token);
+        }
+        return context;
+    }
+
     @Override
     public Object getPrincipal(){
         return token;
@@ -4,24 +4,38 @@ import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.backend.backend.common.utils.Base64ConvertUtil;
 import com.backend.backend.enums.RedisEnum;
+import com.backend.backend.enums.TokenEnum;
 import com.backend.backend.exception.TokenException;
 import com.backend.backend.model.entity.User;
 import com.backend.backend.redis.RedisUtil;
 import com.backend.backend.service.UserService;
+import com.backend.backend.shiro.cache.RevocationFilter;
+import com.backend.backend.shiro.cache.VerifiedTokenCache;
 import org.apache.shiro.SecurityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Component;
 
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
+import static com.backend.backend.enums.RedisEnum.TOKEN_INVALIDATE_TOPIC;
 import static com.backend.backend.enums.TokenEnum.*;
 
 /**
@@ -49,6 +63,34 @@ public class JwtUtil {
      */
     private static final Logger logger = LoggerFactory.getLogger(JwtUtil.class);
 
+    /**
+     * 解密后的accessToken私钥和refreshToken私钥，只解密一次
+     */
+    private static final String JWT_KEY = decodeKey(ENCRYPT_JWT_KEY);
+    private static final String REFRESH_JWT_KEY = decodeKey(ENCRYPT_REFRESH_JWT_KEY);
+
+    /**
+     * 每个用户的签名算法和校验器缓存，key为 私钥类型:userId
+     */
+    private static final int ALGORITHM_CACHE_SIZE = Integer.parseInt(JWT_ALGORITHM_CACHE_SIZE.getCode());
+    private static final Map<String, Algorithm> ALGORITHMS = new ConcurrentHashMap<>();
+    private static final Map<String, JWTVerifier> VERIFIERS = new ConcurrentHashMap<>();
+
+    /**
+     * 刷新token时的校验器key前缀，允许已过期的accessToken通过校验
+     */
+    private static final String REFRESH_VERIFIER_PREFIX = "REFRESH_GRACE:";
+
+    /**
+     * 原子轮换refreshToken的lua脚本
+     */
+    private static final DefaultRedisScript<String> ROTATE_REFRESH_TOKEN_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        ROTATE_REFRESH_TOKEN_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/rotate_refresh_token.lua")));
+        ROTATE_REFRESH_TOKEN_SCRIPT.setResultType(String.class);
+    }
+
     /**
      * 判断是否存在refreshToken决定签发token
      *
@@ -59,25 +101,11 @@ public class JwtUtil {
      * @return
      */
     public static String signAndIssueToken(String userId, String name, String type, String token) {
-        String refreshToken;
-        String currTimeStamp = String.valueOf(System.currentTimeMillis()); // 获取当前时间戳
         // 刷新token
         if (token != null) {
-            String time = getClaim(token, PAYLOAD_CREATE_TIME_TAG.getCode());
-            refreshToken = getRefreshToken(userId, time);
-            // 刷新token，并返回
-            if (refreshToken != null) {
-                if (refreshToken.indexOf(SHIRO_CACHE_DELETE_TOKEN_PREFIX.getCode()) >= 0) {
-                    return refreshToken.replace(SHIRO_CACHE_DELETE_TOKEN_PREFIX.getCode(), "");
-                }
-                String newToken = JwtUtil.sign(userId, name, type, currTimeStamp);
-                // 刷新refreshToken
-                updateRefreshToken(token, currTimeStamp, newToken);
-                // 签发新的token
-                return newToken;
-            }
-            return null;
+            return signAndIssueToken(TokenContext.of(token));
         }
+        String currTimeStamp = String.valueOf(System.currentTimeMillis()); // 获取当前时间戳
         // 签发新的token
 
         // 添加refreshToken
@@ -85,6 +113,31 @@ public class JwtUtil {
         return JwtUtil.sign(userId, name, type, currTimeStamp); // 生成新的token
     }
 
+    /**
+     * 用已解析的原token刷新，签发新的token
+     *
+     * @param context 原token
+     * @return refreshToken不存在返回null
+     */
+    public static String signAndIssueToken(TokenContext context) {
+        String currTimeStamp = String.valueOf(System.currentTimeMillis()); // 获取当前时间戳
+        String newToken = JwtUtil.sign(context.getUserIdText(), context.getUserName(), String.valueOf(context.getType()), currTimeStamp);
+        // 刷新refreshToken，已被其他请求刷新过则返回那次签发的token
+        return updateRefreshToken(context, currTimeStamp, newToken);
+    }
+
+    /**
+     * 刷新过期的accessToken，调用前需已通过verifyForRefresh
+     * 同一次登录的并发刷新只执行一次，其余请求复用结果
+     *
+     * @param context 过期的token
+     * @return 新token，refreshToken不存在或刷新失败返回null
+     */
+    public static String refreshAccessToken(TokenContext context) {
+        return TokenRefreshCoordinator.refresh(context,
+                () -> judgeRefreshToken(context) ? signAndIssueToken(context) : null);
+    }
+
     /**
      * 传入userId和time得到对应的redis 的key
      *
@@ -114,16 +167,98 @@ public class JwtUtil {
      * @return
      */
     public static boolean verify(String token) {
+        // 格式错误直接抛出JWTDecodeException，不做签名计算
+        return verify(TokenContext.of(token));
+    }
+
+    /**
+     * 验证token是否正确
+     *
+     * @param context 已解析的token
+     * @return
+     */
+    public static boolean verify(TokenContext context) {
+        DecodedJWT jwt = context.getJwt();
+        // 已经过期的直接抛出TokenExpiredException，由JwtFilter走刷新流程（刷新前会再校验签名）
+        Date expiresAt = jwt.getExpiresAt();
+        if (expiresAt != null && expiresAt.getTime() <= System.currentTimeMillis()) {
+            throw new TokenExpiredException("The Token has expired on " + expiresAt + ".");
+        }
+        getVerifier(context.getUserIdText()).verify(context.getToken());
+        return true;
+    }
+
+    /**
+     * 刷新token前校验签名，允许accessToken已过期（不超过refreshToken有效期）
+     *
+     * @param context 已解析的token
+     * @return 签名正确返回true
+     */
+    public static boolean verifyForRefresh(TokenContext context) {
         try {
-            // 帐号加JWT私钥解密
-            String secret = getClaim(token, PAYLOAD_USER_ID_TAG.getCode()) + Base64ConvertUtil.decode(ENCRYPT_JWT_KEY.getCode());
-            Algorithm algorithm = Algorithm.HMAC256(secret);  // 解密 验证正确性
-            JWTVerifier verifier = JWT.require(algorithm).build();
-            DecodedJWT jwt = verifier.verify(token);
+            String userId = context.getUserIdText();
+            cached(VERIFIERS, REFRESH_VERIFIER_PREFIX + userId, key -> JWT.require(getAlgorithm(ENCRYPT_JWT_KEY, userId))
+                    .acceptExpiresAt(Long.parseLong(REFRESH_TOKEN_EXPIRE_TIME.getCode()))
+                    .build()).verify(context.getToken());
             return true;
+        } catch (JWTVerificationException e) {
+            logger.error("刷新Token时签名校验失败:" + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 获取用户的accessToken校验器
+     *
+     * @param userId
+     * @return
+     */
+    private static JWTVerifier getVerifier(String userId) {
+        return cached(VERIFIERS, ENCRYPT_JWT_KEY.name() + ":" + userId,
+                key -> JWT.require(getAlgorithm(ENCRYPT_JWT_KEY, userId)).build());
+    }
+
+    /**
+     * 获取用户的签名算法，私钥为 userId + 对应私钥
+     *
+     * @param keyType ENCRYPT_JWT_KEY 或 ENCRYPT_REFRESH_JWT_KEY
+     * @param userId
+     * @return
+     */
+    private static Algorithm getAlgorithm(TokenEnum keyType, String userId) {
+        return cached(ALGORITHMS, keyType.name() + ":" + userId,
+                key -> Algorithm.HMAC256(userId + (keyType == ENCRYPT_REFRESH_JWT_KEY ? REFRESH_JWT_KEY : JWT_KEY)));
+    }
+
+    /**
+     * 从有界缓存中获取，不存在则创建，超出大小时先淘汰一部分
+     */
+    private static <T> T cached(Map<String, T> cache, String key, Function<String, T> creator) {
+        T value = cache.get(key);
+        if (value != null) {
+            return value;
+        }
+        if (cache.size() >= ALGORITHM_CACHE_SIZE) {
+            Iterator<String> iterator = cache.keySet().iterator();
+            for (int i = 0; i < ALGORITHM_CACHE_SIZE / 10 + 1 && iterator.hasNext(); i++) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return cache.computeIfAbsent(key, creator);
+    }
+
+    /**
+     * 解密Base64加密后的私钥
+     *
+     * @param key
+     * @return
+     */
+    private static String decodeKey(TokenEnum key) {
+        try {
+            return Base64ConvertUtil.decode(key.getCode());
         } catch (UnsupportedEncodingException e) {
-            logger.error("JWTToken认证解密出现UnsupportedEncodingException异常:" + e.getMessage());
-            throw new TokenException("JWTToken认证解密出现UnsupportedEncodingException异常:" + e.getMessage());
+            throw new TokenException("JWT私钥解密出现UnsupportedEncodingException异常:" + e.getMessage());
         }
     }
 
@@ -155,29 +290,23 @@ public class JwtUtil {
      * @return 返回加密的Token
      */
     public static String sign(String userId, String name, String type, String currentTimeMillis) {
-        try {
-            // 帐号加JWT私钥加密
-            String secret = userId + Base64ConvertUtil.decode(ENCRYPT_JWT_KEY.getCode());
-            // 此处过期时间是以毫秒为单位，所以乘以1000
-            Date date = new Date(System.currentTimeMillis() + Long.parseLong(ACCESS_TOKEN_EXPIRE_TIME.getCode()) * 1000L);
-            Algorithm algorithm = Algorithm.HMAC256(secret);
-            // 获取用户对应的角色Id
-            List<Long> ids = new ArrayList<>();
-            StringBuffer roleIds = new StringBuffer();
-            ids.stream().forEach(e -> roleIds.append(e + ","));
-            // 附带account帐号信息
-            return JWT.create()
-                    .withClaim(PAYLOAD_USER_ID_TAG.getCode(), userId)
-                    .withClaim(PAYLOAD_CREATE_TIME_TAG.getCode(), currentTimeMillis)
-                    .withClaim(PAYLOAD_USER_NAME_TAG.getCode(), name)
-                    .withClaim(PAYLOAD_USER_TYPE_TAG.getCode(), type)
-                    .withClaim(PAYLOAD_ROLE_TAG.getCode(), roleIds.toString())
-                    .withExpiresAt(date)
-                    .sign(algorithm);
-        } catch (UnsupportedEncodingException e) {
-            logger.error("JWTToken加密出现UnsupportedEncodingException异常:" + e.getMessage());
-            throw new JWTDecodeException("JWTToken加密出现UnsupportedEncodingException异常:" + e.getMessage());
-        }
+        // 帐号加JWT私钥加密
+        Algorithm algorithm = getAlgorithm(ENCRYPT_JWT_KEY, userId);
+        // 此处过期时间是以毫秒为单位，所以乘以1000
+        Date date = new Date(System.currentTimeMillis() + Long.parseLong(ACCESS_TOKEN_EXPIRE_TIME.getCode()) * 1000L);
+        // 获取用户对应的角色Id
+        List<Long> ids = new ArrayList<>();
+        StringBuffer roleIds = new StringBuffer();
+        ids.stream().forEach(e -> roleIds.append(e + ","));
+        // 附带account帐号信息
+        return JWT.create()
+                .withClaim(PAYLOAD_USER_ID_TAG.getCode(), userId)
+                .withClaim(PAYLOAD_CREATE_TIME_TAG.getCode(), currentTimeMillis)
+                .withClaim(PAYLOAD_USER_NAME_TAG.getCode(), name)
+                .withClaim(PAYLOAD_USER_TYPE_TAG.getCode(), type)
+                .withClaim(PAYLOAD_ROLE_TAG.getCode(), roleIds.toString())
+                .withExpiresAt(date)
+                .sign(algorithm);
     }
 
     /**
@@ -190,21 +319,15 @@ public class JwtUtil {
      * @return
      */
     public static String signRefreshToken(String userId, String name, String currentTimeMillis, Date date) {
-        try {
-            // 帐号加JWT私钥加密
-            String secret = userId + Base64ConvertUtil.decode(ENCRYPT_REFRESH_JWT_KEY.getCode());
-            Algorithm algorithm = Algorithm.HMAC256(secret);
-            // 附带account帐号信息
-            return JWT.create()
-                    .withClaim(PAYLOAD_USER_ID_TAG.getCode(), userId)
-                    .withClaim(PAYLOAD_CREATE_TIME_TAG.getCode(), currentTimeMillis)
-                    .withClaim(PAYLOAD_USER_NAME_TAG.getCode(), name)
-                    .withExpiresAt(date)
-                    .sign(algorithm);
-        } catch (UnsupportedEncodingException e) {
-            logger.error("JWTToken加密出现UnsupportedEncodingException异常:" + e.getMessage());
-            throw new JWTDecodeException("JWTToken加密出现UnsupportedEncodingException异常:" + e.getMessage());
-        }
+        // 帐号加JWT私钥加密
+        Algorithm algorithm = getAlgorithm(ENCRYPT_REFRESH_JWT_KEY, userId);
+        // 附带account帐号信息
+        return JWT.create()
+                .withClaim(PAYLOAD_USER_ID_TAG.getCode(), userId)
+                .withClaim(PAYLOAD_CREATE_TIME_TAG.getCode(), currentTimeMillis)
+                .withClaim(PAYLOAD_USER_NAME_TAG.getCode(), name)
+                .withExpiresAt(date)
+                .sign(algorithm);
     }
 
     /**
@@ -245,36 +368,67 @@ public class JwtUtil {
     public static void deleteRefreshToken(String userId, String time, String token) {
         RedisUtil.set(getRedisKey(userId, time), SHIRO_CACHE_DELETE_TOKEN_PREFIX.getCode() + token,
                 Long.parseLong(SHIRO_CACHE_DELETE_TOKEN_EXPIRE_TIME.getCode()));
+        publishInvalidate(userId, time);
+    }
+
+    /**
+     * 清除本节点已验证token缓存，并通知其他节点清除
+     *
+     * @param userId
+     * @param time   签发时间，为null时清除该用户所有token
+     */
+    private static void publishInvalidate(String userId, String time) {
+        String message = VerifiedTokenCache.invalidateMessage(userId, time);
+        VerifiedTokenCache.invalidate(message);
+        RevocationFilter.publish(message, System.currentTimeMillis());
+        RedisUtil.convertAndSend(TOKEN_INVALIDATE_TOPIC.getCode(), message);
     }
 
 
     /**
-     * 更新refreshToken ，如果不存在则创建，不刷新过期时间
+     * 更新refreshToken ，不刷新过期时间
      *
      * @param token
      * @param currentTimeMillis
      * @param newToken
-     * @return
+     * @return 应下发的token，原refreshToken不存在返回null
      */
     public static String updateRefreshToken(String token, String currentTimeMillis, String newToken) {
         try {
-            String userId = getClaim(token, PAYLOAD_USER_ID_TAG.getCode());
-            String oldTime = getClaim(token, PAYLOAD_CREATE_TIME_TAG.getCode());
-            // 获取redis里面的原有token
-            String refreshToken = getRefreshToken(userId, oldTime);
-            // 获取过期时间
-            Long expire = RedisUtil.getExpire(getRedisKey(userId, oldTime));
-            // 删除原来token
-            deleteRefreshToken(userId, oldTime, newToken);
-            // 将原来的refreshToken换key存储新到redis
-            RedisUtil.set(getRedisKey(userId, currentTimeMillis), refreshToken, expire);
-
-            return refreshToken;
+            return updateRefreshToken(TokenContext.of(token), currentTimeMillis, newToken);
         } catch (Exception e) {
             return null;
         }
     }
 
+    /**
+     * 更新refreshToken ，不刷新过期时间
+     * 在redis中用一个lua脚本原子完成：读取原refreshToken、原key写入墓碑、按原过期时间移到新key，
+     * 并发刷新同一个token时只有一个请求轮换成功，其余拿到墓碑中的token
+     *
+     * @param context           已解析的原token
+     * @param currentTimeMillis 新token的签发时间
+     * @param newToken          新签发的token
+     * @return 应下发的token，原refreshToken不存在返回null
+     */
+    public static String updateRefreshToken(TokenContext context, String currentTimeMillis, String newToken) {
+        try {
+            String userId = context.getUserIdText();
+            String oldTime = context.getCreateTime();
+            String issued = RedisUtil.executeForString(ROTATE_REFRESH_TOKEN_SCRIPT,
+                    Arrays.asList(getRedisKey(userId, oldTime), getRedisKey(userId, currentTimeMillis)),
+                    SHIRO_CACHE_DELETE_TOKEN_PREFIX.getCode(), newToken, SHIRO_CACHE_DELETE_TOKEN_EXPIRE_TIME.getCode());
+            // 本次轮换成功，原token失效
+            if (newToken.equals(issued)) {
+                publishInvalidate(userId, oldTime);
+            }
+            return issued;
+        } catch (Exception e) {
+            logger.error("刷新refreshToken出现异常:" + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * 根据token判断refreshToken是否存在和 正确
      *
@@ -283,11 +437,23 @@ public class JwtUtil {
      */
     public static boolean judgeRefreshToken(String token) {
         try {
-            // 获取userId
-            String userId = JwtUtil.getClaim(token, PAYLOAD_USER_ID_TAG.getCode());
-            String time = JwtUtil.getClaim(token, PAYLOAD_CREATE_TIME_TAG.getCode());
+            return judgeRefreshToken(TokenContext.of(token));
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 根据已解析的token判断refreshToken是否存在和 正确
+     *
+     * @param context
+     * @return
+     */
+    public static boolean judgeRefreshToken(TokenContext context) {
+        try {
             // 获取refreshToken如果为null则不正确
-            String refreshToken = getRefreshToken(userId, time);
+            String refreshToken = getRefreshToken(context.getUserIdText(), context.getCreateTime());
             return refreshToken != null;
         } catch (Exception e) {
             System.out.println(e.getMessage());
@@ -302,11 +468,8 @@ public class JwtUtil {
      * @return
      */
     public static User getCurrentUser() {
-        if (SecurityUtils.getSubject().getPrincipals() == null) {
-            return null;
-        }
-        String token = SecurityUtils.getSubject().getPrincipals().toString();
-        return token == null ? null : userServiceImpl.getById(Long.parseLong(getClaim(token, PAYLOAD_USER_ID_TAG.getCode())));
+        TokenContext context = getCurrentContext();
+        return context == null ? null : userServiceImpl.getCachedById(context.getUserId());
     }
 
     /**
@@ -315,21 +478,34 @@ public class JwtUtil {
      * @return
      */
     public static User getCurrentUserOfToken() {
-        if (SecurityUtils.getSubject().getPrincipals() == null) {
+        TokenContext context = getCurrentContext();
+        if (context == null) {
             return null;
         }
-        String token = SecurityUtils.getSubject().getPrincipals().toString();
-        String id = getClaim(token, PAYLOAD_USER_ID_TAG.getCode());
-        String name = getClaim(token, PAYLOAD_USER_NAME_TAG.getCode());
-        Integer type = Integer.parseInt(getClaim(token, PAYLOAD_USER_TYPE_TAG.getCode()));
         User user = new User();
-        user.setUserId(Long.parseLong(id));
-        user.setName(name);
-        user.setName(name);
-        user.setType(type);
+        user.setUserId(context.getUserId());
+        user.setName(context.getUserName());
+        user.setType(context.getType());
         return user;
     }
 
+    /**
+     * 当前登录用户的token上下文，优先取JwtFilter放入当前线程的，否则从Shiro的principal解析
+     *
+     * @return 未登录返回null
+     */
+    public static TokenContext getCurrentContext() {
+        TokenContext context = TokenContext.current();
+        if (context != null) {
+            return context;
+        }
+        if (SecurityUtils.getSubject().getPrincipals() == null) {
+            return null;
+        }
+        String token = SecurityUtils.getSubject().getPrincipals().toString();
+        return token == null ? null : TokenContext.of(token);
+    }
+
     /**
      * 判断是否含有某些权限
      *
@@ -349,5 +525,6 @@ public class JwtUtil {
      */
     public static void forcedOffLine(Long userId) {
         RedisUtil.clear(getRedisKey(userId.toString(), ""));
+        publishInvalidate(userId.toString(), null);
     }
 }
\ No newline at end of file
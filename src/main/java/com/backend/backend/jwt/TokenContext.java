@@ -0,0 +1,134 @@
+package com.backend.backend.jwt;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.backend.backend.common.utils.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+
+import static com.backend.backend.enums.TokenEnum.*;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 11:40
+ * @description :  请求内的token上下文
+ * token只解析一次，保存DecodedJWT和类型化后的有效载荷，不可变。
+ * JwtFilter认证成功后放入当前线程，请求结束时清除，JwtUtil、ShiroRealm、CustomCache等直接读取。
+ */
+public final class TokenContext {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenContext.class);
+
+    private static final ThreadLocal<TokenContext> CURRENT = new ThreadLocal<>();
+
+    private final String token;
+    private final DecodedJWT jwt;
+    private final String userIdText;
+    private final long userId;
+    private final String userName;
+    private final int type;
+    private final String createTime;
+
+    private TokenContext(String token, DecodedJWT jwt) {
+        this.token = token;
+        this.jwt = jwt;
+        this.userIdText = jwt.getClaim(PAYLOAD_USER_ID_TAG.getCode()).asString();
+        this.userName = jwt.getClaim(PAYLOAD_USER_NAME_TAG.getCode()).asString();
+        this.createTime = jwt.getClaim(PAYLOAD_CREATE_TIME_TAG.getCode()).asString();
+        String typeText = jwt.getClaim(PAYLOAD_USER_TYPE_TAG.getCode()).asString();
+        try {
+            this.userId = StringUtil.isBlank(userIdText) ? 0L : Long.parseLong(userIdText);
+            this.type = StringUtil.isBlank(typeText) ? 0 : Integer.parseInt(typeText);
+        } catch (NumberFormatException e) {
+            logger.error("解密Token中的公共信息出现NumberFormatException异常:" + e.getMessage());
+            throw new JWTDecodeException("解密Token中的公共信息出现NumberFormatException异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 解析token
+     *
+     * @param token
+     * @return
+     */
+    public static TokenContext parse(String token) {
+        try {
+            return new TokenContext(token, JWT.decode(token));
+        } catch (JWTDecodeException e) {
+            logger.error("解密Token中的公共信息出现JWTDecodeException异常:" + e.getMessage());
+            throw new JWTDecodeException("解密Token中的公共信息出现JWTDecodeException异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 如果当前请求已经解析过该token则直接返回，否则解析
+     *
+     * @param token
+     * @return
+     */
+    public static TokenContext of(String token) {
+        TokenContext context = CURRENT.get();
+        if (context != null && context.token.equals(token)) {
+            return context;
+        }
+        return parse(token);
+    }
+
+    /**
+     * 当前请求已认证的token上下文，未登录返回null
+     *
+     * @return
+     */
+    public static TokenContext current() {
+        return CURRENT.get();
+    }
+
+    static void set(TokenContext context) {
+        CURRENT.set(context);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public DecodedJWT getJwt() {
+        return jwt;
+    }
+
+    /**
+     * token中的userId原始字符串，用于拼接redis的key
+     */
+    public String getUserIdText() {
+        return userIdText;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * 签发时间戳，与refreshToken在redis中的key对应
+     */
+    public String getCreateTime() {
+        return createTime;
+    }
+
+    public Date getExpiresAt() {
+        return jwt.getExpiresAt();
+    }
+}
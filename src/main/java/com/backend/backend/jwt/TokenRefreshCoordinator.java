@@ -0,0 +1,97 @@
+package com.backend.backend.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.backend.backend.enums.TokenEnum.SHIRO_CACHE_DELETE_TOKEN_EXPIRE_TIME;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 15:10
+ * @description :  token刷新的单飞协调
+ * 同一次登录(userId:createTime)的accessToken过期后客户端往往并发发出多个请求，
+ * 只有第一个请求真正执行刷新，其余请求等待它的结果并拿到同一个新token，不再访问Redis和签名。
+ * 刷新成功的结果保留SHIRO_CACHE_DELETE_TOKEN_EXPIRE_TIME，与Redis中的墓碑存在时间一致，晚到的请求也直接复用。
+ */
+public class TokenRefreshCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRefreshCoordinator.class);
+
+    /**
+     * 结果保留时间，也是等待其他请求刷新的最长时间(毫秒)
+     */
+    private static final long RESULT_TTL = Long.parseLong(SHIRO_CACHE_DELETE_TOKEN_EXPIRE_TIME.getCode());
+
+    private static final Map<String, Flight> FLIGHTS = new ConcurrentHashMap<>();
+
+    private TokenRefreshCoordinator() {
+    }
+
+    /**
+     * 执行或等待同一次登录的刷新
+     *
+     * @param context 过期的token
+     * @param refresh 实际的刷新动作，返回新token，失败返回null
+     * @return 新token，失败返回null
+     */
+    public static String refresh(TokenContext context, Supplier<String> refresh) {
+        String key = context.getUserIdText() + ":" + context.getCreateTime();
+        long now = System.currentTimeMillis();
+        Flight flight = new Flight();
+        Flight running = FLIGHTS.putIfAbsent(key, flight);
+        if (running != null && running.expireAt > 0 && running.expireAt <= now) {
+            // 已过保留时间的结果，换成本次
+            running = FLIGHTS.replace(key, running, flight) ? null : FLIGHTS.putIfAbsent(key, flight);
+        }
+        if (running != null) {
+            return await(running);
+        }
+        String token = null;
+        try {
+            token = refresh.get();
+            return token;
+        } finally {
+            flight.future.complete(token);
+            if (token == null) {
+                // 失败不保留，之后的请求重新判断
+                FLIGHTS.remove(key, flight);
+            } else {
+                flight.expireAt = System.currentTimeMillis() + RESULT_TTL;
+                purge(flight.expireAt - RESULT_TTL);
+            }
+        }
+    }
+
+    private static String await(Flight flight) {
+        try {
+            return flight.future.get(RESULT_TTL, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            logger.error("等待token刷新结果出现异常:" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 清除已过保留时间的结果
+     */
+    private static void purge(long now) {
+        FLIGHTS.values().removeIf(f -> f.expireAt > 0 && f.expireAt <= now);
+    }
+
+    private static class Flight {
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        /**
+         * 0表示正在刷新
+         */
+        private volatile long expireAt;
+    }
+}
@@ -0,0 +1,27 @@
+package com.backend.backend.model.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.annotations.ApiModel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 22:10
+ * @description :  已归档的物流信息，字段与物流信息相同
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@TableName("logistics_archive")
+@NoArgsConstructor
+@ApiModel(value = "已归档的物流信息")
+public class LogisticsArchive extends Logistics {
+
+    /**
+     * 归档时间
+     */
+    private Date archiveTime;
+}
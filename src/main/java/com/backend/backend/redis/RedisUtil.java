@@ -1,12 +1,26 @@
 package com.backend.backend.redis;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ConvertingCursor;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * @Author: goodtimp
@@ -17,6 +31,13 @@ import java.util.concurrent.TimeUnit;
 public class RedisUtil {
     private static RedisTemplate<String, Object> redisTemplate;
 
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        RELEASE_LOCK_SCRIPT.setLocation(new ClassPathResource("lua/release_lock.lua"));
+        RELEASE_LOCK_SCRIPT.setResultType(Long.class);
+    }
+
     /**
      * 需要filter注入那时还不能注入，所以改成静态
      *
@@ -27,6 +48,16 @@ public class RedisUtil {
         RedisUtil.redisTemplate = redisTemplate;
     }
 
+    /**
+     * SCAN每次迭代的COUNT，同时也是批量UNLINK、MGET的批大小
+     */
+    private static long scanCount = 1000L;
+
+    @Value("${redis-util.scan-count:1000}")
+    public void setScanCount(long scanCount) {
+        RedisUtil.scanCount = scanCount;
+    }
+
 
     // ---------------------- 基础操作 ---------------------
 
@@ -71,47 +102,223 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * 批量删除，使用UNLINK由redis在后台线程释放内存，按批pipeline发送
+     *
+     * @param keys
+     * @return 删除的个数
+     */
+    public static Long unlink(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return 0L;
+        }
+        RedisSerializer<String> keySerializer = keySerializer();
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            List<byte[]> batch = new ArrayList<>();
+            for (String key : keys) {
+                batch.add(keySerializer.serialize(key));
+                if (batch.size() >= scanCount) {
+                    connection.unlink(batch.toArray(new byte[0][]));
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                connection.unlink(batch.toArray(new byte[0][]));
+            }
+            return null;
+        });
+        long count = 0L;
+        for (Object result : results) {
+            if (result instanceof Long) {
+                count += (Long) result;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 用SCAN游标遍历匹配的key，不会像KEYS一样阻塞redis
+     * 返回的游标使用完必须关闭
+     *
+     * @param pattern 匹配规则，例如 token:refresh:*
+     * @param count   每次迭代的COUNT
+     * @return
+     */
+    public static Cursor<String> scan(String pattern, long count) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(count).build();
+        RedisSerializer<String> keySerializer = keySerializer();
+        Cursor<byte[]> cursor = redisTemplate.executeWithStickyConnection(
+                (RedisCallback<Cursor<byte[]>>) connection -> connection.scan(options));
+        return new ConvertingCursor<>(cursor, keySerializer::deserialize);
+    }
+
+    /**
+     * 用SCAN游标遍历匹配的key，每凑满一批交给consumer处理
+     *
+     * @param pattern  匹配规则
+     * @param count    每次迭代的COUNT，也是每批的大小
+     * @param consumer 批处理
+     */
+    public static void scan(String pattern, long count, Consumer<List<String>> consumer) {
+        try (Cursor<String> cursor = scan(pattern, count)) {
+            List<String> batch = new ArrayList<>();
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= count) {
+                    consumer.accept(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 用SCAN游标遍历匹配的key，COUNT和每批的大小取配置的redis-util.scan-count
+     *
+     * @param pattern  匹配规则
+     * @param consumer 批处理
+     */
+    public static void scan(String pattern, Consumer<List<String>> consumer) {
+        scan(pattern, scanCount, consumer);
+    }
+
     /**
      * 得到前缀为传入值所有的key
+     * key很多时会占用较多内存，只需要遍历时使用scan
      *
-     * @param prefix 要求含有的前缀，不传清除所有
+     * @param prefix 要求含有的前缀，不传返回所有
      * @return
      */
-    public static Set getAllKey(String... prefix) {
+    public static Set<String> getAllKey(String... prefix) {
         Set<String> keys = new HashSet<>();
-        if (prefix == null || prefix.length == 0) {
-            keys.containsAll(redisTemplate.keys("*"));
-        } else {
-            for (String item : prefix) {
-                Set<String> keyRedis = redisTemplate.keys(item + "*");
-                keys.addAll(keyRedis);
-            }
+        for (String pattern : patterns(prefix)) {
+            scan(pattern, keys::addAll);
         }
         return keys;
     }
 
     /**
-     * 得到前缀为传入值 redis所有中key的数量
+     * 得到前缀为传入值 redis所有中key的数量，遍历时只计数不保存key
      *
      * @param prefix 要求含有的前缀
      * @return
      */
     public static Integer getAllKeyLength(String... prefix) {
-        return getAllKey(prefix).size();
+        int[] count = {0};
+        for (String pattern : patterns(prefix)) {
+            scan(pattern, batch -> count[0] += batch.size());
+        }
+        return count[0];
     }
 
     /**
-     * 清除前缀为传入值的所有缓存
+     * 清除前缀为传入值的所有缓存，边SCAN边批量UNLINK
      *
      * @param prefix
      * @return
      */
     public static Integer clear(String... prefix) {
-        Set<String> keys = getAllKey(prefix);
-        for (String item : keys) {
-            redisTemplate.delete(item);
+        long[] count = {0L};
+        for (String pattern : patterns(prefix)) {
+            scan(pattern, batch -> count[0] += unlink(batch));
+        }
+        return (int) count[0];
+    }
+
+    /**
+     * 前缀转为SCAN的匹配规则，不传为所有
+     */
+    private static List<String> patterns(String... prefix) {
+        if (prefix == null || prefix.length == 0) {
+            return Collections.singletonList("*");
+        }
+        List<String> patterns = new ArrayList<>(prefix.length);
+        for (String item : prefix) {
+            patterns.add(item + "*");
+        }
+        return patterns;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisSerializer<String> keySerializer() {
+        return (RedisSerializer<String>) redisTemplate.getKeySerializer();
+    }
+
+    /**
+     * 向频道发布一条消息
+     *
+     * @param channel 频道
+     * @param message 消息
+     * @return true 成功  false 失败
+     */
+    public static Boolean convertAndSend(String channel, Object message) {
+        try {
+            redisTemplate.convertAndSend(channel, message);
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
         }
-        return keys.size();
+    }
+
+    // ---------------------- script ---------------------
+
+    /**
+     * 执行lua脚本，参数和返回值使用RedisTemplate的value序列化方式
+     *
+     * @param script 脚本
+     * @param keys   KEYS
+     * @param args   ARGV
+     * @return 脚本返回值
+     */
+    public static <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        return redisTemplate.execute(script, keys, args);
+    }
+
+    /**
+     * 执行lua脚本，参数和返回值都按原始字符串处理
+     * 脚本内读写的值仍是Jackson序列化后的json，需要时在脚本中用cjson编解码
+     *
+     * @param script 脚本
+     * @param keys   KEYS
+     * @param args   ARGV
+     * @return 脚本返回值
+     */
+    public static String executeForString(RedisScript<String> script, List<String> keys, String... args) {
+        StringRedisSerializer serializer = new StringRedisSerializer();
+        return redisTemplate.execute(script, serializer, serializer, keys, (Object[]) args);
+    }
+
+    /**
+     * 执行Lua脚本，参数和返回的列表元素都按字符串处理
+     *
+     * @param script 返回类型为List的脚本
+     * @param keys   KEYS
+     * @param args   ARGV
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> executeForStringList(RedisScript<List> script, List<String> keys, String... args) {
+        StringRedisSerializer serializer = new StringRedisSerializer();
+        // 返回List时序列化器作用于每个元素
+        return (List<String>) redisTemplate.execute(script, serializer, (RedisSerializer) serializer, keys, (Object[]) args);
+    }
+
+    /**
+     * 按value的序列化方式转为json，作为executeForString的参数写入时与RedisTemplate写入的一致
+     *
+     * @param value
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static String toJson(Object value) {
+        byte[] bytes = ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
     }
 
     // ---------------------- String（普通键值对） ---------------------
@@ -130,6 +337,28 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * 批量获取，按批使用MGET
+     *
+     * @param keys
+     * @return 与keys顺序一致的值，不存在的为null
+     */
+    public static List<Object> mget(Collection<String> keys) {
+        List<Object> values = new ArrayList<>(keys.size());
+        List<String> batch = new ArrayList<>();
+        for (String key : keys) {
+            batch.add(key);
+            if (batch.size() >= scanCount) {
+                values.addAll(redisTemplate.opsForValue().multiGet(batch));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            values.addAll(redisTemplate.opsForValue().multiGet(batch));
+        }
+        return values;
+    }
+
     /**
      * 修改
      *
@@ -168,6 +397,30 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * key不存在时放入并设置时间
+     *
+     * @param key
+     * @param value
+     * @param time  time（毫秒）要大于0
+     * @return true 成功  false 已存在
+     */
+    public static Boolean setIfAbsent(String key, Object value, Long time) {
+        return redisTemplate.opsForValue().setIfAbsent(key, value, time, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 释放setIfAbsent加的锁，值仍是token时才删除
+     *
+     * @param key
+     * @param token 加锁时放入的值，每次加锁唯一
+     * @return true 已释放  false 锁已过期或已被其他持有者拿到
+     */
+    public static Boolean releaseIfEquals(String key, Object token) {
+        Long deleted = redisTemplate.execute(RELEASE_LOCK_SCRIPT, Collections.singletonList(key), token);
+        return deleted != null && deleted > 0;
+    }
+
     /**
      * 普通set 设置时间
      *
@@ -218,6 +471,28 @@ public class RedisUtil {
         return redisTemplate.opsForValue().decrement(key, -delta);
     }
 
+    /**
+     * 多个key同时递增，管道执行
+     *
+     * @param keys
+     * @param delta（递增数量 大于0）
+     */
+    public static void incrPipelined(Collection<String> keys, Long delta) {
+        if (delta < 0) {
+            throw new RuntimeException("递增因子必须大于0");
+        }
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> keySerializer = keySerializer();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.incrBy(keySerializer.serialize(key), delta);
+            }
+            return null;
+        });
+    }
+
     // ---------------------- hash map ---------------------
 
     /**
@@ -458,6 +733,83 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * 把同一个值批量放入多个set，管道执行
+     *
+     * @param keys  键
+     * @param value 值
+     */
+    public static void sSetPipelined(Collection<String> keys, Object value) {
+        sPipelined(keys, value, true);
+    }
+
+    /**
+     * 把同一个值从多个set中移除，管道执行
+     *
+     * @param keys  键
+     * @param value 值
+     */
+    public static void sRemovePipelined(Collection<String> keys, Object value) {
+        sPipelined(keys, value, false);
+    }
+
+    private static void sPipelined(Collection<String> keys, Object value, boolean add) {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        sUpdatePipelined(Collections.singletonList(add ? SetChange.add(keys, value) : SetChange.remove(keys, value)));
+    }
+
+    /**
+     * 一组set的放入和移除，按顺序在一个管道中执行
+     *
+     * @param changes
+     */
+    @SuppressWarnings("unchecked")
+    public static void sUpdatePipelined(List<SetChange> changes) {
+        if (changes == null || changes.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> keySerializer = keySerializer();
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (SetChange change : changes) {
+                byte[] member = valueSerializer.serialize(change.value);
+                for (String key : change.keys) {
+                    if (change.add) {
+                        connection.sAdd(keySerializer.serialize(key), member);
+                    } else {
+                        connection.sRem(keySerializer.serialize(key), member);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 把同一个值放入或移出多个set
+     */
+    public static final class SetChange {
+        private final Collection<String> keys;
+        private final Object value;
+        private final boolean add;
+
+        private SetChange(Collection<String> keys, Object value, boolean add) {
+            this.keys = keys;
+            this.value = value;
+            this.add = add;
+        }
+
+        public static SetChange add(Collection<String> keys, Object value) {
+            return new SetChange(keys, value, true);
+        }
+
+        public static SetChange remove(Collection<String> keys, Object value) {
+            return new SetChange(keys, value, false);
+        }
+    }
+
     /**
      * 获取set缓存的长度
      *
@@ -705,4 +1057,52 @@ public class RedisUtil {
             return 0L;
         }
     }
+
+    // ===============================zset=================================
+
+    /**
+     * 向有序集合添加元素，已存在则更新分数
+     *
+     * @param key   键
+     * @param value 值
+     * @param score 分数
+     * @return
+     */
+    public static Boolean zAdd(String key, Object value, double score) {
+        try {
+            return redisTemplate.opsForZSet().add(key, value, score);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 获取分数在[min, max]之间的元素及其分数，按分数从小到大
+     *
+     * @param key 键
+     * @param min 最小分数
+     * @param max 最大分数
+     * @return
+     */
+    public static Set<ZSetOperations.TypedTuple<Object>> zRangeByScoreWithScores(String key, double min, double max) {
+        return redisTemplate.opsForZSet().rangeByScoreWithScores(key, min, max);
+    }
+
+    /**
+     * 移除分数在[min, max]之间的元素
+     *
+     * @param key 键
+     * @param min 最小分数
+     * @param max 最大分数
+     * @return 移除的个数
+     */
+    public static Long zRemoveRangeByScore(String key, double min, double max) {
+        try {
+            return redisTemplate.opsForZSet().removeRangeByScore(key, min, max);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 0L;
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package com.backend.backend.service;
+
+import com.backend.backend.common.model.CursorPage;
+import com.backend.backend.model.entity.LogisticsArchive;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 22:30
+ * @description :  已归档的物流信息查询
+ */
+public interface LogisticsArchiveService extends IService<LogisticsArchive> {
+
+    /**
+     * 分页查询已归档且未删除的物流信息，按logId倒序
+     *
+     * @param logId  物流Id
+     * @param code   取件码
+     * @param phone  收件人手机号
+     * @param postId 驿站Id
+     * @param cursor 上一页返回的nextCursor，第一页为空
+     * @param size   每页条数，不超过PageEnum.MAX_SIZE
+     * @return
+     */
+    CursorPage<LogisticsArchive> getPage(Long logId, String code, String phone, Long postId, String cursor, Integer size);
+}
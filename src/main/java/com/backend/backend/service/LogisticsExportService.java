@@ -0,0 +1,23 @@
+package com.backend.backend.service;
+
+import java.io.OutputStream;
+import java.util.function.Supplier;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 20:55
+ * @description :  驿站物流信息导出
+ */
+public interface LogisticsExportService {
+
+    /**
+     * 把驿站的物流信息按logId倒序导出为xlsx
+     *
+     * @param postId 驿站Id
+     * @param type   状态，为空时导出全部
+     * @param output 拿到导出名额后才会调用，用于设置响应头并取得输出流
+     * @return 导出条数，客户端中途断开返回-1
+     * @throws IllegalStateException 同时导出的任务过多
+     */
+    long export(Long postId, Integer type, Supplier<OutputStream> output);
+}
@@ -0,0 +1,30 @@
+package com.backend.backend.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Map;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 20:20
+ * @description :  物流清单导入
+ */
+public interface LogisticsImportService {
+
+    /**
+     * 提交一个快递员物流清单导入任务，异步执行
+     *
+     * @param file   .xlsx或.xls文件，第一行为表头，列见LogisticsExcelModel
+     * @param postId 驿站Id
+     * @return 任务Id
+     */
+    String submit(MultipartFile file, Long postId);
+
+    /**
+     * 获取导入任务进度
+     *
+     * @param jobId
+     * @return 任务不存在或已过期返回null
+     */
+    Map<String, Object> getProgress(String jobId);
+}
@@ -1,10 +1,16 @@
 package com.backend.backend.service;
 
+import com.backend.backend.common.model.BatchItemResult;
+import com.backend.backend.common.model.CursorPage;
 import com.backend.backend.model.entity.Logistics;
 import com.backend.backend.model.entity.User;
 import com.baomidou.mybatisplus.extension.service.IService;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 /**
  * @Author: goodtimp
@@ -13,6 +19,12 @@ import java.util.List;
  */
 
 public interface LogisticsService extends IService<Logistics> {
+
+    /**
+     * 批量新增、修改一次最多的条数
+     */
+    int MAX_BATCH_SIZE = 1000;
+
     /**
      * 通过参数获取物流列表
      *
@@ -26,6 +38,88 @@ public interface LogisticsService extends IService<Logistics> {
      */
     List<Logistics> getList(Long logId, Integer type, String productName, String code, String phone, Long postId);
 
+    /**
+     * 通过参数获取物流列表，按logId倒序的游标分页
+     *
+     * @param logId
+     * @param type
+     * @param productName
+     * @param code
+     * @param phone        收货人手机号
+     * @param postId       驿站Id
+     * @param cursor       上一页返回的nextCursor，第一页为空
+     * @param size         每页条数，不超过PageEnum.MAX_SIZE
+     * @param checkHasMore 是否多查一条判断有没有下一页，不判断时只要本页满了就返回nextCursor
+     * @return
+     */
+    CursorPage<Logistics> getPage(Long logId, Integer type, String productName, String code, String phone, Long postId,
+                                  String cursor, Integer size, boolean checkHasMore);
+
+    /**
+     * 通过参数流式读取物流列表，按logId倒序，逐条交给consumer，不把结果集放入内存
+     *
+     * @param logId
+     * @param type
+     * @param productName
+     * @param code
+     * @param phone       收货人手机号
+     * @param postId      驿站Id
+     * @param consumer    返回false时停止读取
+     * @return 读取的条数
+     */
+    long streamList(Long logId, Integer type, String productName, String code, String phone, Long postId,
+                    Predicate<Logistics> consumer);
+
+    /**
+     * 驿站查询结果缓存的命中、未命中和加载耗时统计
+     *
+     * @return
+     */
+    Map<String, Object> getQueryCacheStats();
+
+    /**
+     * 订阅物流信息变更，驿站Id和手机号至少一个，两个都传时满足其一即推送
+     *
+     * @param postId 驿站Id
+     * @param phone  收件人手机号
+     * @return SSE连接
+     */
+    SseEmitter subscribeChanges(Long postId, String phone);
+
+    /**
+     * 本节点变更推送的连接数和推送统计
+     *
+     * @return
+     */
+    Map<String, Object> getChangeFeedStats();
+
+    /**
+     * 驿站各状态的物流数量，读Redis计数，不查数据库
+     *
+     * @param postId 驿站Id
+     * @return types（每个状态的type、msg、count）, total
+     */
+    Map<String, Object> getStationStats(Long postId);
+
+    /**
+     * 按关键词检索产品名称、收货地址、发货地址，走n-gram倒排索引
+     *
+     * @param keyword 关键词
+     * @param postId  驿站Id，可为空
+     * @param size    条数，不超过PageEnum.MAX_SIZE
+     * @return 按相关度排序
+     */
+    List<Logistics> search(String keyword, Long postId, Integer size);
+
+    /**
+     * 按驿站Id和取件码查找，走取件码索引
+     *
+     * @param postId 驿站Id
+     * @param code   取件码
+     * @return 不存在返回null
+     */
+    Logistics getByPickupCode(Long postId, String code);
+
     /**
      * 新增
      *
@@ -35,13 +129,69 @@ public interface LogisticsService extends IService<Logistics> {
     Logistics saveLogistics(Logistics logistics);
 
     /**
-     * 修改
+     * 修改，带了状态时按流转表检查，并且只在当前状态仍是修改前读到的状态时才修改
      *
      * @param logistics
-     * @return
+     * @return 修改后的记录，记录不存在或状态已被并发修改返回null
+     * @throws IllegalArgumentException 状态不允许这样流转
      */
     Logistics updateLogistics(Logistics logistics);
 
+    /**
+     * 修改状态和备注；修改状态时与updateLogistics相同，同步写库，
+     * 只修改备注时开启延迟写则合并后批量写库，否则同步写库
+     *
+     * @param logId
+     * @param type   状态，为空不修改
+     * @param remark 备注，为空不修改
+     * @return 是否修改成功，记录不存在或已删除返回false；延迟写时记录存在即返回true，写库前被删除的丢弃
+     * @throws IllegalArgumentException 状态不允许这样流转
+     */
+    boolean updateLogisticsStatus(Long logId, Integer type, String remark);
+
+    /**
+     * 延迟写的缓存条数和写入统计
+     *
+     * @return
+     */
+    Map<String, Object> getWriteBehindStats();
+
+    /**
+     * 状态流转，按LogisticsTypeEnum声明的流转表检查后用一条带当前状态条件的UPDATE修改，不需要先查询或加锁
+     *
+     * @param logId
+     * @param from  调用方看到的当前状态
+     * @param to    新状态
+     * @return 修改后的记录，当前状态已不是from或记录不存在返回null
+     */
+    Logistics transitLogistics(Long logId, Integer from, Integer to);
+
+    /**
+     * 批量新增，一个事务内用JDBC批处理插入，要么全部成功要么全部失败
+     *
+     * @param list 不超过MAX_BATCH_SIZE条
+     * @return 每条的结果，与传入顺序一致
+     */
+    List<BatchItemResult> saveLogisticsBatch(List<Logistics> list);
+
+    /**
+     * 批量新增，指定操作人和时间，用于没有请求上下文的导入任务
+     *
+     * @param list     不超过MAX_BATCH_SIZE条
+     * @param operator 操作人
+     * @param time     创建时间
+     * @return 每条的结果，与传入顺序一致
+     */
+    List<BatchItemResult> saveLogisticsBatch(List<Logistics> list, User operator, Date time);
+
+    /**
+     * 批量修改，一个事务内用JDBC批处理按Id更新，不存在的Id单独报告失败
+     *
+     * @param list 不超过MAX_BATCH_SIZE条
+     * @return 每条的结果，与传入顺序一致
+     */
+    List<BatchItemResult> updateLogisticsBatch(List<Logistics> list);
+
     /**
      * 通过Id删除
      *
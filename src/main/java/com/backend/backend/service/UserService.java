@@ -1,8 +1,11 @@
 package com.backend.backend.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.backend.backend.datasource.ReadFromPrimary;
 import com.backend.backend.model.entity.User;
 
+import java.util.Map;
+
 /**
  * @Author: goodtimp
  * @Date: 2019/9/24 19:22
@@ -11,11 +14,12 @@ import com.backend.backend.model.entity.User;
 
 public interface UserService extends IService<User> {
     /**
-     * 通过phone得到用户
+     * 通过phone得到用户，用于认证，总是读主库
      *
      * @param phone
      * @return
      */
+    @ReadFromPrimary
     User getUserByPhone(String phone);
 
     /**
@@ -29,11 +33,12 @@ public interface UserService extends IService<User> {
     User login(String phone, String password);
 
     /**
-     * 通过name登录
+     * 通过name登录，总是读主库，刚注册的用户也能登录
      *
      * @param name
      * @return
      */
+    @ReadFromPrimary
     User getUserByName(String name);
 
     /**
@@ -50,4 +55,21 @@ public interface UserService extends IService<User> {
      * @param
      */
     User changePassword(String param, String Password);
+
+    /**
+     * 通过Id获取用户，走缓存，不含密码和盐
+     * 未命中时读主库，刚注册的用户也能查到
+     *
+     * @param userId
+     * @return 不存在返回null
+     */
+    @ReadFromPrimary
+    User getCachedById(Long userId);
+
+    /**
+     * 用户缓存的命中、未命中和加载耗时统计
+     *
+     * @return
+     */
+    Map<String, Object> getCacheStats();
 }
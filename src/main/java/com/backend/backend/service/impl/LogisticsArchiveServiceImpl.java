@@ -0,0 +1,50 @@
+package com.backend.backend.service.impl;
+
+import com.backend.backend.common.model.CursorPage;
+import com.backend.backend.dao.LogisticsArchiveMapper;
+import com.backend.backend.enums.DelFlagEnum;
+import com.backend.backend.enums.PageEnum;
+import com.backend.backend.model.entity.LogisticsArchive;
+import com.backend.backend.service.LogisticsArchiveService;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 22:30
+ * @description :  已归档的物流信息查询
+ */
+@Service
+@RequiredArgsConstructor(onConstructor = @_(@Autowired))
+public class LogisticsArchiveServiceImpl extends ServiceImpl<LogisticsArchiveMapper, LogisticsArchive> implements LogisticsArchiveService {
+
+    final private LogisticsArchiveMapper logisticsArchiveMapper;
+
+    @Override
+    public CursorPage<LogisticsArchive> getPage(Long logId, String code, String phone, Long postId, String cursor, Integer size) {
+        int limit = PageEnum.limit(size);
+        Long lastId = CursorPage.decodeCursor(cursor);
+        QueryWrapper<LogisticsArchive> queryWrapper = new QueryWrapper<>();
+        queryWrapper.lambda().eq(logId != null, LogisticsArchive::getLogId, logId)
+                .eq(code != null, LogisticsArchive::getLogCode, code)
+                .eq(phone != null, LogisticsArchive::getPhone, phone)
+                .eq(postId != null, LogisticsArchive::getPostId, postId)
+                .eq(LogisticsArchive::getDelFlag, DelFlagEnum.NORMAL.getCode())
+                .lt(lastId != null, LogisticsArchive::getLogId, lastId)
+                .orderByDesc(LogisticsArchive::getLogId);
+        List<LogisticsArchive> records = logisticsArchiveMapper.selectPage(new Page<>(1, limit + 1, false), queryWrapper).getRecords();
+        boolean hasMore = records.size() > limit;
+        if (hasMore) {
+            records = new ArrayList<>(records.subList(0, limit));
+        }
+        String nextCursor = hasMore ? CursorPage.encodeCursor(records.get(records.size() - 1).getLogId()) : null;
+        return new CursorPage<>(records, nextCursor, hasMore);
+    }
+}
@@ -0,0 +1,120 @@
+package com.backend.backend.service.impl;
+
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.event.WriteHandler;
+import com.alibaba.excel.metadata.Sheet;
+import com.alibaba.excel.support.ExcelTypeEnum;
+import com.backend.backend.common.model.LogisticsExportModel;
+import com.backend.backend.service.LogisticsExportService;
+import com.backend.backend.service.LogisticsService;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 21:00
+ * @description :  驿站物流信息导出
+ * 从数据库游标逐行读取，每CHUNK_SIZE行交给easyexcel写一次；xlsx由SXSSFWorkbook生成，
+ * 内存中只保留最近的几百行，其余行落到临时文件，结束时写入输出流并删除临时文件，内存占用与行数无关。
+ * 导出期间一直占用一个请求线程和一个数据库连接，所以同时导出的任务数有上限，超过时直接拒绝。
+ */
+@Service
+public class LogisticsExportServiceImpl implements LogisticsExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogisticsExportServiceImpl.class);
+
+    /**
+     * 每次交给easyexcel写的行数
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    private final LogisticsService logisticsServiceImpl;
+
+    private final Semaphore exportPermits;
+
+    @Autowired
+    public LogisticsExportServiceImpl(LogisticsService logisticsServiceImpl,
+                                      @Value("${logistics.export.max-concurrent:2}") int maxConcurrent) {
+        this.logisticsServiceImpl = logisticsServiceImpl;
+        this.exportPermits = new Semaphore(maxConcurrent);
+    }
+
+    @Override
+    public long export(Long postId, Integer type, Supplier<OutputStream> output) {
+        if (postId == null) {
+            throw new IllegalArgumentException("驿站Id不能为空");
+        }
+        if (!exportPermits.tryAcquire()) {
+            throw new IllegalStateException("导出任务过多，请稍后再试");
+        }
+        WorkbookHolder holder = new WorkbookHolder();
+        try {
+            ExcelWriter writer = new ExcelWriter(null, output.get(), ExcelTypeEnum.XLSX, true, holder);
+            Sheet sheet = new Sheet(1, 0, LogisticsExportModel.class);
+            sheet.setSheetName("物流信息");
+            List<LogisticsExportModel> chunk = new ArrayList<>(CHUNK_SIZE);
+            long count = logisticsServiceImpl.streamList(null, type, null, null, null, postId, logistics -> {
+                chunk.add(LogisticsExportModel.of(logistics));
+                if (chunk.size() >= CHUNK_SIZE) {
+                    writer.write(chunk, sheet);
+                    chunk.clear();
+                }
+                return true;
+            });
+            // 没有数据时也写出表头
+            writer.write(chunk, sheet);
+            try {
+                writer.finish();
+            } catch (Exception e) {
+                // 只有这一步写输出流，失败基本是客户端断开
+                logger.warn("导出物流信息中断:" + e.getMessage());
+                return -1L;
+            }
+            return count;
+        } finally {
+            holder.dispose();
+            exportPermits.release();
+        }
+    }
+
+    /**
+     * easyexcel不暴露workbook，从创建sheet的回调中取得，结束后删除SXSSF的临时文件
+     */
+    private static class WorkbookHolder implements WriteHandler {
+
+        private SXSSFWorkbook workbook;
+
+        @Override
+        public void sheet(int sheetNo, org.apache.poi.ss.usermodel.Sheet sheet) {
+            if (sheet.getWorkbook() instanceof SXSSFWorkbook) {
+                workbook = (SXSSFWorkbook) sheet.getWorkbook();
+            }
+        }
+
+        @Override
+        public void row(int rowNum, Row row) {
+        }
+
+        @Override
+        public void cell(int cellNum, Cell cell) {
+        }
+
+        private void dispose() {
+            if (workbook != null) {
+                workbook.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.backend.backend.service.impl;
+
+import com.alibaba.excel.EasyExcelFactory;
+import com.alibaba.excel.context.AnalysisContext;
+import com.alibaba.excel.event.AnalysisEventListener;
+import com.alibaba.excel.metadata.Sheet;
+import com.backend.backend.common.FormatCheck;
+import com.backend.backend.common.model.LogisticsExcelModel;
+import com.backend.backend.common.utils.StringUtil;
+import com.backend.backend.enums.LogisticsTypeEnum;
+import com.backend.backend.jwt.JwtUtil;
+import com.backend.backend.model.entity.Logistics;
+import com.backend.backend.model.entity.User;
+import com.backend.backend.redis.RedisUtil;
+import com.backend.backend.service.LogisticsImportService;
+import com.backend.backend.service.LogisticsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.backend.backend.enums.RedisEnum.IMPORT_JOB_PREFIX;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 20:25
+ * @description :  物流清单导入
+ * 上传的文件先存为临时文件，由导入线程用easyexcel的事件模式逐行解析，不把整个文件读入内存；
+ * 校验通过的行攒满一批后交给写入线程批量插入，每个任务同时在写的批数有上限，写不过来时解析线程等待，内存占用与行数无关。
+ * 进度保存在Redis hash：job:import:{jobId}，错误明细保存在job:import:{jobId}:errors，保留一天。
+ */
+@Service
+public class LogisticsImportServiceImpl implements LogisticsImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogisticsImportServiceImpl.class);
+
+    /**
+     * 每批插入条数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * 每个任务同时在写的批数
+     */
+    private static final int MAX_IN_FLIGHT_BATCHES = 2;
+
+    /**
+     * 最多记录的错误条数
+     */
+    private static final int MAX_ERRORS = 100;
+
+    /**
+     * 进度保存时间(毫秒)
+     */
+    private static final long JOB_EXPIRE_TIME = 24 * 3600 * 1000L;
+
+    private static final String STATUS_WAITING = "WAITING";
+    private static final String STATUS_RUNNING = "RUNNING";
+    private static final String STATUS_DONE = "DONE";
+    private static final String STATUS_FAILED = "FAILED";
+
+    private final LogisticsService logisticsServiceImpl;
+
+    /**
+     * 解析线程，同时最多2个任务，再多排队，队列满了拒绝
+     */
+    private final ThreadPoolExecutor importExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(8), namedThreadFactory("logistics-import-"));
+
+    /**
+     * 写入线程，所有任务共用
+     */
+    private final ExecutorService writeExecutor = Executors.newFixedThreadPool(2 * MAX_IN_FLIGHT_BATCHES,
+            namedThreadFactory("logistics-import-write-"));
+
+    @Autowired
+    public LogisticsImportServiceImpl(LogisticsService logisticsServiceImpl) {
+        this.logisticsServiceImpl = logisticsServiceImpl;
+    }
+
+    @Override
+    public String submit(MultipartFile file, Long postId) {
+        String fileName = file.getOriginalFilename() == null ? "" : file.getOriginalFilename();
+        String lowerName = fileName.toLowerCase();
+        if (!lowerName.endsWith(".xlsx") && !lowerName.endsWith(".xls")) {
+            throw new IllegalArgumentException("只支持.xlsx或.xls文件");
+        }
+        // 异步线程拿不到当前请求的用户，提交时取好
+        User operator = JwtUtil.getCurrentUserOfToken();
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        File temp;
+        try {
+            temp = File.createTempFile("logistics-import-", lowerName.substring(lowerName.lastIndexOf('.')));
+            file.transferTo(temp);
+        } catch (IOException e) {
+            logger.error("保存导入文件出现IOException异常:" + e.getMessage());
+            throw new IllegalStateException("保存导入文件失败:" + e.getMessage());
+        }
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("status", STATUS_WAITING);
+        progress.put("fileName", fileName);
+        progress.put("postId", String.valueOf(postId));
+        progress.put("read", 0L);
+        progress.put("success", 0L);
+        progress.put("failed", 0L);
+        progress.put("createTime", System.currentTimeMillis());
+        RedisUtil.hmset(jobKey(jobId), progress, JOB_EXPIRE_TIME);
+        try {
+            importExecutor.execute(() -> run(jobId, temp, postId, operator));
+        } catch (RejectedExecutionException e) {
+            temp.delete();
+            RedisUtil.hset(jobKey(jobId), "status", STATUS_FAILED);
+            throw new IllegalStateException("导入任务过多，请稍后再试");
+        }
+        return jobId;
+    }
+
+    @Override
+    public Map<String, Object> getProgress(String jobId) {
+        Map<Object, Object> progress = RedisUtil.hmget(jobKey(jobId));
+        if (progress == null || progress.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("jobId", jobId);
+        progress.forEach((key, value) -> result.put(key.toString(), value));
+        result.put("errors", RedisUtil.lGet(errorKey(jobId), 0L, -1L));
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importExecutor.shutdownNow();
+        writeExecutor.shutdown();
+    }
+
+    private void run(String jobId, File temp, Long postId, User operator) {
+        String key = jobKey(jobId);
+        RedisUtil.hset(key, "status", STATUS_RUNNING);
+        ManifestListener listener = new ManifestListener(jobId, postId, operator);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(temp))) {
+            EasyExcelFactory.readBySax(in, new Sheet(1, 1, LogisticsExcelModel.class), listener);
+            listener.awaitWrites();
+            RedisUtil.hset(key, "read", listener.read.get());
+            RedisUtil.hset(key, "status", STATUS_DONE);
+        } catch (Exception e) {
+            logger.error("导入物流清单" + jobId + "出现异常:" + e.getMessage());
+            listener.awaitWrites();
+            RedisUtil.hset(key, "read", listener.read.get());
+            RedisUtil.hset(key, "status", STATUS_FAILED);
+            RedisUtil.hset(key, "msg", String.valueOf(e.getMessage()));
+        } finally {
+            RedisUtil.hset(key, "endTime", System.currentTimeMillis());
+            RedisUtil.expire(errorKey(jobId), JOB_EXPIRE_TIME);
+            if (!temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * 逐行解析，攒批后交给写入线程
+     */
+    private class ManifestListener extends AnalysisEventListener<Object> {
+
+        private final String jobId;
+        private final Long postId;
+        private final User operator;
+        private final Date time = new Date();
+        private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT_BATCHES);
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private List<Logistics> batch = new ArrayList<>(BATCH_SIZE);
+        private int batchFirstRow;
+
+        private ManifestListener(String jobId, Long postId, User operator) {
+            this.jobId = jobId;
+            this.postId = postId;
+            this.operator = operator;
+        }
+
+        @Override
+        public void invoke(Object object, AnalysisContext context) {
+            read.incrementAndGet();
+            // excel中的行号，从1开始，含表头
+            int row = context.getCurrentRowNum() + 1;
+            if (!(object instanceof LogisticsExcelModel)) {
+                fail(row, 1, "无法解析该行");
+                return;
+            }
+            LogisticsExcelModel model = (LogisticsExcelModel) object;
+            String error = validate(model);
+            if (error != null) {
+                fail(row, 1, error);
+                return;
+            }
+            if (batch.isEmpty()) {
+                batchFirstRow = row;
+            }
+            batch.add(toLogistics(model));
+            if (batch.size() >= BATCH_SIZE) {
+                flush(row);
+            }
+        }
+
+        @Override
+        public void doAfterAllAnalysed(AnalysisContext context) {
+            if (!batch.isEmpty()) {
+                flush(batchFirstRow + batch.size() - 1);
+            }
+        }
+
+        /**
+         * 等待所有在写的批次完成
+         */
+        private void awaitWrites() {
+            inFlight.acquireUninterruptibly(MAX_IN_FLIGHT_BATCHES);
+            inFlight.release(MAX_IN_FLIGHT_BATCHES);
+        }
+
+        private void flush(int lastRow) {
+            List<Logistics> toWrite = batch;
+            int firstRow = batchFirstRow;
+            batch = new ArrayList<>(BATCH_SIZE);
+            // 在写的批数到上限时等待，解析不会跑到写入前面太多
+            inFlight.acquireUninterruptibly();
+            RedisUtil.hset(jobKey(jobId), "read", read.get());
+            try {
+                writeExecutor.execute(() -> {
+                    try {
+                        logisticsServiceImpl.saveLogisticsBatch(toWrite, operator, time);
+                        RedisUtil.hincr(jobKey(jobId), "success", (long) toWrite.size());
+                    } catch (Exception e) {
+                        logger.error("导入物流清单" + jobId + "写入出现异常:" + e.getMessage());
+                        fail(firstRow, toWrite.size(), "第" + firstRow + "至" + lastRow + "行写入失败:" + e.getMessage());
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+
+        private void fail(int row, int count, String msg) {
+            RedisUtil.hincr(jobKey(jobId), "failed", (long) count);
+            if (errors.incrementAndGet() <= MAX_ERRORS) {
+                RedisUtil.lSet(errorKey(jobId), count == 1 ? "第" + row + "行:" + msg : msg);
+            }
+        }
+
+        private String validate(LogisticsExcelModel model) {
+            if (LogisticsTypeEnum.of(parseType(model.getType())) == null) {
+                return "状态不正确(1等待揽件 2运输中 3已签收)";
+            }
+            if (StringUtil.isBlank(model.getProductName())) {
+                return "产品名称不能为空";
+            }
+            String phone = model.getPhone() == null ? "" : model.getPhone().trim();
+            if (!phone.matches("^1\\d{10}$") && !FormatCheck.isPhoneLegal(phone)) {
+                return "收件人手机号不正确";
+            }
+            return null;
+        }
+
+        private Logistics toLogistics(LogisticsExcelModel model) {
+            Logistics logistics = new Logistics();
+            logistics.setType(parseType(model.getType()));
+            logistics.setProductName(model.getProductName().trim());
+            logistics.setLogCode(StringUtil.isBlank(model.getLogCode()) ? null : model.getLogCode().trim());
+            logistics.setPhone(model.getPhone().trim());
+            logistics.setDeliveryAddress(model.getDeliveryAddress());
+            logistics.setShipAddress(model.getShipAddress());
+            logistics.setPostId(postId);
+            return logistics;
+        }
+
+        private Integer parseType(String type) {
+            try {
+                return type == null ? null : Integer.valueOf(type.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private static String jobKey(String jobId) {
+        return IMPORT_JOB_PREFIX.getCode() + jobId;
+    }
+
+    private static String errorKey(String jobId) {
+        return IMPORT_JOB_PREFIX.getCode() + jobId + ":errors";
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicLong count = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,16 +1,47 @@
 package com.backend.backend.service.impl;
 
+import com.backend.backend.base.AuditStamp;
+import com.backend.backend.common.id.IdGenerator;
+import com.backend.backend.common.model.BatchItemResult;
+import com.backend.backend.common.model.CursorPage;
 import com.backend.backend.dao.LogisticsMapper;
 import com.backend.backend.enums.DelFlagEnum;
+import com.backend.backend.enums.LogisticsTypeEnum;
+import com.backend.backend.enums.PageEnum;
 import com.backend.backend.model.entity.Logistics;
+import com.backend.backend.model.entity.User;
 import com.backend.backend.service.LogisticsService;
+import com.backend.backend.service.support.LogisticsChange;
+import com.backend.backend.service.support.LogisticsChangeDispatcher;
+import com.backend.backend.service.support.LogisticsChangeFeed;
+import com.backend.backend.service.support.LogisticsSearchIndex;
+import com.backend.backend.service.support.LogisticsWriteBehind;
+import com.backend.backend.service.support.PickupCodeIndex;
+import com.backend.backend.service.support.StationCounters;
+import com.backend.backend.service.support.StationQueryCache;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.SqlSession;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
+import java.sql.Statement;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * @Author: goodtimp
@@ -21,25 +52,194 @@ import java.util.List;
 @RequiredArgsConstructor(onConstructor = @_(@Autowired))
 public class LogisticsServiceImpl extends ServiceImpl<LogisticsMapper, Logistics> implements LogisticsService {
 
+    private static final Logger logger = LoggerFactory.getLogger(LogisticsServiceImpl.class);
+
+    /**
+     * 批处理每多少条发送一次
+     */
+    private static final int JDBC_BATCH_SIZE = 500;
+
     final private LogisticsMapper logisticsMapper;
 
+    final private PickupCodeIndex pickupCodeIndex;
+
+    final private LogisticsSearchIndex logisticsSearchIndex;
+
+    final private StationQueryCache stationQueryCache;
+
+    final private LogisticsChangeFeed logisticsChangeFeed;
+
+    final private StationCounters stationCounters;
+
+    final private LogisticsWriteBehind logisticsWriteBehind;
+
+    final private LogisticsChangeDispatcher changeDispatcher;
+
     @Override
     public List<Logistics> getList(Long logId, Integer type, String productName, String code, String phone, Long postId) {
+        return logisticsWriteBehind.overlay(logisticsMapper.selectList(buildListQuery(logId, type, productName, code, phone, postId)));
+    }
+
+    @Override
+    public CursorPage<Logistics> getPage(Long logId, Integer type, String productName, String code, String phone, Long postId,
+                                         String cursor, Integer size, boolean checkHasMore) {
+        int limit = PageEnum.limit(size);
+        if (postId == null) {
+            return overlayPage(queryPage(logId, type, productName, code, phone, null, cursor, limit, checkHasMore));
+        }
+        // 驿站终端轮询的查询走缓存，驿站数据变化时失效
+        String params = String.join("|", String.valueOf(logId), String.valueOf(type), String.valueOf(productName),
+                String.valueOf(code), String.valueOf(phone), String.valueOf(cursor), String.valueOf(limit), String.valueOf(checkHasMore));
+        return overlayPage(stationQueryCache.get(postId, params,
+                () -> queryPage(logId, type, productName, code, phone, postId, cursor, limit, checkHasMore)));
+    }
+
+    /**
+     * 覆盖延迟写中未入库的修改，返回新的分页对象，缓存中的不变
+     */
+    private CursorPage<Logistics> overlayPage(CursorPage<Logistics> page) {
+        List<Logistics> records = logisticsWriteBehind.overlay(page.getRecords());
+        if (records == page.getRecords()) {
+            return page;
+        }
+        return new CursorPage<>(records, page.getNextCursor(), page.getHasMore());
+    }
+
+    @Override
+    public Map<String, Object> getQueryCacheStats() {
+        return stationQueryCache.stats();
+    }
+
+    @Override
+    public SseEmitter subscribeChanges(Long postId, String phone) {
+        return logisticsChangeFeed.open(postId, phone);
+    }
+
+    @Override
+    public Map<String, Object> getChangeFeedStats() {
+        return logisticsChangeFeed.stats();
+    }
+
+    @Override
+    public Map<String, Object> getStationStats(Long postId) {
+        List<Map<String, Object>> types = new ArrayList<>();
+        long total = 0L;
+        for (Map.Entry<Integer, Long> entry : stationCounters.get(postId).entrySet()) {
+            Map<String, Object> type = new LinkedHashMap<>();
+            type.put("type", entry.getKey());
+            type.put("msg", LogisticsTypeEnum.of(entry.getKey()).getMsg());
+            type.put("count", entry.getValue());
+            types.add(type);
+            total += entry.getValue();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("types", types);
+        stats.put("total", total);
+        return stats;
+    }
+
+    private CursorPage<Logistics> queryPage(Long logId, Integer type, String productName, String code, String phone, Long postId,
+                                            String cursor, int limit, boolean checkHasMore) {
+        Long lastId = CursorPage.decodeCursor(cursor);
+        QueryWrapper<Logistics> queryWrapper = buildListQuery(logId, type, productName, code, phone, postId);
+        // 按主键倒序，从上一页最后一条之后开始，不用offset也不count
+        queryWrapper.lambda().lt(lastId != null, Logistics::getLogId, lastId)
+                .orderByDesc(Logistics::getLogId);
+        List<Logistics> records = logisticsMapper.selectPage(
+                new Page<>(1, checkHasMore ? limit + 1 : limit, false), queryWrapper).getRecords();
+        boolean hasMore = records.size() > limit;
+        if (hasMore) {
+            records = new ArrayList<>(records.subList(0, limit));
+        }
+        boolean hasNext = checkHasMore ? hasMore : records.size() == limit;
+        String nextCursor = hasNext ? CursorPage.encodeCursor(records.get(records.size() - 1).getLogId()) : null;
+        return new CursorPage<>(records, nextCursor, checkHasMore ? hasMore : null);
+    }
+
+    @Override
+    public long streamList(Long logId, Integer type, String productName, String code, String phone, Long postId,
+                           Predicate<Logistics> consumer) {
+        QueryWrapper<Logistics> queryWrapper = buildListQuery(logId, type, productName, code, phone, postId);
+        queryWrapper.lambda().orderByDesc(Logistics::getLogId);
+        long[] count = {0L};
+        logisticsMapper.streamList(queryWrapper, context -> {
+            count[0]++;
+            if (!consumer.test(logisticsWriteBehind.overlay(context.getResultObject()))) {
+                context.stop();
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * 构造getList的查询条件，不依赖实例状态，基准测试直接调用
+     *
+     * @param logId
+     * @param type
+     * @param productName
+     * @param code
+     * @param phone
+     * @param postId
+     * @return
+     */
+    public static QueryWrapper<Logistics> buildListQuery(Long logId, Integer type, String productName, String code, String phone, Long postId) {
         QueryWrapper<Logistics> queryWrapper = new QueryWrapper<>();
         queryWrapper.lambda().eq(logId != null, Logistics::getLogId, logId)
-                .eq(type != null, Logistics::getLogId, logId)
-                .like(productName != null, Logistics::getProductName, "%" + productName + "%")
+                .eq(type != null, Logistics::getType, type)
+                .like(productName != null, Logistics::getProductName, productName)
                 .eq(code != null, Logistics::getLogCode, code)
                 .eq(phone != null, Logistics::getPhone, phone)
                 .eq(postId != null, Logistics::getPostId, postId)
                 .eq(Logistics::getDelFlag, DelFlagEnum.NORMAL.getCode());
-        return logisticsMapper.selectList(queryWrapper);
+        return queryWrapper;
+    }
+
+    @Override
+    public List<Logistics> search(String keyword, Long postId, Integer size) {
+        List<Long> ids = logisticsSearchIndex.search(keyword, postId, PageEnum.limit(size));
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 按检索结果的顺序返回，过滤掉已删除的
+        Map<Long, Logistics> rows = new HashMap<>();
+        for (Logistics logistics : listByIds(ids)) {
+            if (Objects.equals(logistics.getDelFlag(), DelFlagEnum.NORMAL.getCode())) {
+                rows.put(logistics.getLogId(), logistics);
+            }
+        }
+        List<Logistics> list = new ArrayList<>(rows.size());
+        for (Long id : ids) {
+            if (rows.containsKey(id)) {
+                list.add(rows.get(id));
+            }
+        }
+        return logisticsWriteBehind.overlay(list);
+    }
+
+    @Override
+    public Logistics getByPickupCode(Long postId, String code) {
+        // 索引存的是整条记录，命中时直接返回；记录已不匹配（取件码改了、已删除）时按未命中处理
+        Logistics logistics = pickupCodeIndex.get(postId, code);
+        if (logistics != null && Objects.equals(logistics.getPostId(), postId) && Objects.equals(logistics.getLogCode(), code)
+                && Objects.equals(logistics.getDelFlag(), DelFlagEnum.NORMAL.getCode())) {
+            return logisticsWriteBehind.overlay(logistics);
+        }
+        // 索引未命中时查库，查到说明索引缺失，顺便补上
+        QueryWrapper<Logistics> queryWrapper = buildListQuery(null, null, null, code, null, postId);
+        queryWrapper.lambda().orderByDesc(Logistics::getLogId);
+        List<Logistics> list = logisticsMapper.selectPage(new Page<>(1, 1, false), queryWrapper).getRecords();
+        if (list.isEmpty()) {
+            return null;
+        }
+        pickupCodeIndex.put(list.get(0));
+        return logisticsWriteBehind.overlay(list.get(0));
     }
 
     @Override
     public Logistics saveLogistics(Logistics logistics) {
-        logistics.setCreate();
+        logistics.resetAudit();
         if (save(logistics)) {
+            changeDispatcher.publish(LogisticsChange.save(logistics));
             return logistics;
         }
         return null;
@@ -47,18 +247,329 @@ public class LogisticsServiceImpl extends ServiceImpl<LogisticsMapper, Logistics
 
     @Override
     public Logistics updateLogistics(Logistics logistics) {
-        logistics.setUpdate();
-        if (updateById(logistics)) {
+        logistics.resetAudit();
+        logisticsWriteBehind.flush(Collections.singletonList(logistics.getLogId()));
+        Logistics before = getById(logistics.getLogId());
+        if (before == null) {
+            return null;
+        }
+        String error = checkTransition(before, logistics);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        // 带状态的修改以读到的状态为条件，期间被其他请求流转过则不修改
+        boolean updated = logistics.getType() == null ? updateById(logistics)
+                : update(logistics, typeGuard(logistics.getLogId(), before.getType()));
+        if (updated) {
+            notifyUpdate(before);
             return logistics;
         }
         return null;
     }
 
+    /**
+     * 检查修改中的状态是否允许从当前状态流转过去，状态不变或不修改状态时允许
+     *
+     * @return 不允许时返回原因
+     */
+    private static String checkTransition(Logistics before, Logistics logistics) {
+        Integer to = logistics.getType();
+        if (to == null || to.equals(before.getType())) {
+            return null;
+        }
+        LogisticsTypeEnum toType = LogisticsTypeEnum.of(to);
+        if (toType == null) {
+            return "状态不存在:" + to;
+        }
+        LogisticsTypeEnum fromType = LogisticsTypeEnum.of(before.getType());
+        if (fromType == null || !fromType.canTransitTo(toType)) {
+            return (fromType == null ? String.valueOf(before.getType()) : fromType.getMsg()) + "不能改为" + toType.getMsg();
+        }
+        return null;
+    }
+
+    /**
+     * 修改条件：未删除且当前状态为from
+     */
+    private static LambdaUpdateWrapper<Logistics> typeGuard(Long logId, Integer from) {
+        return new UpdateWrapper<Logistics>().lambda()
+                .eq(Logistics::getLogId, logId)
+                .eq(Logistics::getType, from)
+                .eq(Logistics::getDelFlag, DelFlagEnum.NORMAL.getCode());
+    }
+
+    @Override
+    public boolean updateLogisticsStatus(Long logId, Integer type, String remark) {
+        if (logId == null || (type == null && remark == null)) {
+            throw new IllegalArgumentException("logId不能为空，type和remark至少一个");
+        }
+        if (type != null && LogisticsTypeEnum.of(type) == null) {
+            throw new IllegalArgumentException("状态不存在:" + type);
+        }
+        // 状态要按流转表和当前状态检查，只有备注走延迟写；缓存前确认记录存在，已在缓存中的不用再查
+        if (type == null && logisticsWriteBehind.isEnabled()) {
+            if (!logisticsWriteBehind.isPending(logId)) {
+                Logistics current = getById(logId);
+                if (current == null || !Objects.equals(current.getDelFlag(), DelFlagEnum.NORMAL.getCode())) {
+                    return false;
+                }
+            }
+            if (logisticsWriteBehind.offer(logId, remark, AuditStamp.current())) {
+                return true;
+            }
+        }
+        Logistics logistics = new Logistics();
+        logistics.setLogId(logId);
+        logistics.setType(type);
+        logistics.setRemark(remark);
+        return updateLogistics(logistics) != null;
+    }
+
+    @Override
+    public Map<String, Object> getWriteBehindStats() {
+        return logisticsWriteBehind.stats();
+    }
+
+    @Override
+    public Logistics transitLogistics(Long logId, Integer from, Integer to) {
+        LogisticsTypeEnum fromType = LogisticsTypeEnum.of(from);
+        LogisticsTypeEnum toType = LogisticsTypeEnum.of(to);
+        if (logId == null || fromType == null || toType == null) {
+            throw new IllegalArgumentException("logId、from、to不能为空且状态必须存在");
+        }
+        if (!fromType.canTransitTo(toType)) {
+            throw new IllegalArgumentException(fromType.getMsg() + "不能改为" + toType.getMsg());
+        }
+        logisticsWriteBehind.flush(Collections.singletonList(logId));
+        AuditStamp stamp = AuditStamp.current();
+        int rows = logisticsMapper.transitType(logId, from, to, DelFlagEnum.NORMAL.getCode(),
+                stamp.getUserId(), stamp.getUserName(), stamp.getTime());
+        if (rows == 0) {
+            return null;
+        }
+        // 修改成功后读一次完整记录通知监听；修改前后只有状态不同，状态以本次流转为准，不受之后的并发修改影响
+        Logistics after = getById(logId);
+        if (after == null) {
+            return null;
+        }
+        after.setType(to);
+        Logistics before = new Logistics();
+        BeanUtils.copyProperties(after, before);
+        before.setType(from);
+        changeDispatcher.publish(LogisticsChange.update(before, after));
+        return after;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public List<BatchItemResult> saveLogisticsBatch(List<Logistics> list) {
+        // 操作人和时间整批只取一次
+        return AuditStamp.runAs(AuditStamp.current(), () -> doSaveBatch(list));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public List<BatchItemResult> saveLogisticsBatch(List<Logistics> list, User user, Date time) {
+        return AuditStamp.runAs(AuditStamp.of(user, time), () -> doSaveBatch(list));
+    }
+
+    private List<BatchItemResult> doSaveBatch(List<Logistics> list) {
+        checkBatchSize(list);
+        List<Logistics> valid = new ArrayList<>(list.size());
+        List<BatchItemResult> results = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            Logistics logistics = list.get(i);
+            if (logistics == null) {
+                results.add(BatchItemResult.fail(i, null, "物流信息为空"));
+                continue;
+            }
+            logistics.resetAudit();
+            valid.add(logistics);
+            results.add(null);
+        }
+        if (!valid.isEmpty()) {
+            assignIds(valid);
+            saveBatch(valid, JDBC_BATCH_SIZE);
+        }
+        // Id在插入前生成，插入成功后回填结果
+        Iterator<Logistics> saved = valid.iterator();
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, BatchItemResult.success(i, saved.next().getLogId()));
+            }
+        }
+        // 在事务中，提交后整批通知
+        changeDispatcher.publish(valid.stream().map(LogisticsChange::save).collect(Collectors.toList()));
+        return results;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public List<BatchItemResult> updateLogisticsBatch(List<Logistics> list) {
+        return AuditStamp.runAs(AuditStamp.current(), () -> doUpdateBatch(list));
+    }
+
+    private List<BatchItemResult> doUpdateBatch(List<Logistics> list) {
+        checkBatchSize(list);
+        List<Logistics> valid = new ArrayList<>(list.size());
+        List<Integer> validIndexes = new ArrayList<>(list.size());
+        BatchItemResult[] results = new BatchItemResult[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            Logistics logistics = list.get(i);
+            if (logistics == null || logistics.getLogId() == null) {
+                results[i] = BatchItemResult.fail(i, null, "logId不能为空");
+                continue;
+            }
+            logistics.resetAudit();
+            valid.add(logistics);
+            validIndexes.add(i);
+        }
+        if (valid.isEmpty()) {
+            return Arrays.asList(results);
+        }
+        List<Long> validIds = valid.stream().map(Logistics::getLogId).collect(Collectors.toList());
+        logisticsWriteBehind.flush(validIds);
+        Map<Long, Logistics> before = new HashMap<>();
+        for (Logistics logistics : listByIds(validIds)) {
+            before.put(logistics.getLogId(), logistics);
+        }
+        // 不存在的和状态不允许流转的单独失败，不参与批处理
+        List<Logistics> toUpdate = new ArrayList<>(valid.size());
+        List<Integer> toUpdateIndexes = new ArrayList<>(valid.size());
+        for (int i = 0; i < valid.size(); i++) {
+            int index = validIndexes.get(i);
+            Logistics logistics = valid.get(i);
+            Logistics current = before.get(logistics.getLogId());
+            String error = current == null ? "物流信息不存在" : checkTransition(current, logistics);
+            if (error != null) {
+                results[index] = BatchItemResult.fail(index, logistics.getLogId(), error);
+                continue;
+            }
+            toUpdate.add(logistics);
+            toUpdateIndexes.add(index);
+        }
+        valid = toUpdate;
+        validIndexes = toUpdateIndexes;
+        if (valid.isEmpty()) {
+            return Arrays.asList(results);
+        }
+        int[] updateCounts = updateBatchByIdWithCounts(valid, before);
+        // 驱动没有逐条返回影响行数时，以更新前是否存在为准
+        boolean countsReliable = updateCounts.length == valid.size();
+        Set<Long> updatedIds = new HashSet<>();
+        for (int i = 0; i < valid.size(); i++) {
+            int index = validIndexes.get(i);
+            Long id = valid.get(i).getLogId();
+            // 开启rewriteBatchedStatements后驱动可能只返回SUCCESS_NO_INFO
+            boolean updated = !countsReliable
+                    || updateCounts[i] > 0 || updateCounts[i] == Statement.SUCCESS_NO_INFO;
+            if (updated) {
+                results[index] = BatchItemResult.success(index, id);
+                updatedIds.add(id);
+            } else {
+                results[index] = BatchItemResult.fail(index, id, valid.get(i).getType() == null ? "物流信息不存在" : "状态已变更或物流信息不存在");
+            }
+        }
+        if (!updatedIds.isEmpty()) {
+            List<LogisticsChange> changes = new ArrayList<>(updatedIds.size());
+            for (Logistics after : listByIds(updatedIds)) {
+                changes.add(LogisticsChange.update(before.get(after.getLogId()), after));
+            }
+            changeDispatcher.publish(changes);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 与ServiceImpl.updateBatchById相同的批处理，但保留每条语句的影响行数
+     * 带状态的以修改前读到的状态为条件，与updateLogistics一致
+     *
+     * @param before logId -> 修改前的记录
+     */
+    private int[] updateBatchByIdWithCounts(List<Logistics> list, Map<Long, Logistics> before) {
+        String updateById = sqlStatement(SqlMethod.UPDATE_BY_ID);
+        String update = sqlStatement(SqlMethod.UPDATE);
+        List<BatchResult> batchResults = new ArrayList<>();
+        try (SqlSession batchSqlSession = sqlSessionBatch()) {
+            int i = 0;
+            for (Logistics logistics : list) {
+                MapperMethod.ParamMap<Object> param = new MapperMethod.ParamMap<>();
+                param.put(Constants.ENTITY, logistics);
+                if (logistics.getType() == null) {
+                    batchSqlSession.update(updateById, param);
+                } else {
+                    param.put(Constants.WRAPPER, typeGuard(logistics.getLogId(), before.get(logistics.getLogId()).getType()));
+                    batchSqlSession.update(update, param);
+                }
+                if (++i % JDBC_BATCH_SIZE == 0) {
+                    batchResults.addAll(batchSqlSession.flushStatements());
+                }
+            }
+            batchResults.addAll(batchSqlSession.flushStatements());
+        }
+        // 不同字段组合的update语句会分成多组，按顺序拼接
+        return batchResults.stream().flatMapToInt(result -> Arrays.stream(result.getUpdateCounts())).toArray();
+    }
+
+    /**
+     * 没有Id的一次性预留，整批只取一次Id
+     *
+     * @param list
+     */
+    private static void assignIds(List<Logistics> list) {
+        int missing = 0;
+        for (Logistics logistics : list) {
+            if (logistics.getLogId() == null) {
+                missing++;
+            }
+        }
+        if (missing == 0) {
+            return;
+        }
+        long[] ids = IdGenerator.nextIds(missing);
+        int next = 0;
+        for (Logistics logistics : list) {
+            if (logistics.getLogId() == null) {
+                logistics.setLogId(ids[next++]);
+            }
+        }
+    }
+
+    private static void checkBatchSize(List<Logistics> list) {
+        if (list == null || list.isEmpty()) {
+            throw new IllegalArgumentException("物流信息列表不能为空");
+        }
+        if (list.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("一次最多" + MAX_BATCH_SIZE + "条");
+        }
+    }
+
     @Override
     public Logistics deleteLogisticsById(Long id) {
         Logistics logistics = new Logistics();
         logistics.setLogId(id);
         logistics.delete();
-        return updateLogistics(logistics);
+        logisticsWriteBehind.flush(Collections.singletonList(id));
+        Logistics before = getById(id);
+        if (updateById(logistics)) {
+            if (before != null) {
+                changeDispatcher.publish(LogisticsChange.delete(before));
+            }
+            return logistics;
+        }
+        return null;
+    }
+
+    /**
+     * 修改成功后重新读取完整记录，通知监听
+     */
+    private void notifyUpdate(Logistics before) {
+        if (before == null) {
+            return;
+        }
+        Logistics after = getById(before.getLogId());
+        if (after != null) {
+            changeDispatcher.publish(LogisticsChange.update(before, after));
+        }
     }
 }
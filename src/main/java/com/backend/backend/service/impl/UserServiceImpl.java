@@ -1,5 +1,6 @@
 package com.backend.backend.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.backend.backend.common.Tools;
@@ -8,17 +9,29 @@ import com.backend.backend.enums.DelFlagEnum;
 import com.backend.backend.exception.UserException;
 import com.backend.backend.model.entity.User;
 import com.backend.backend.service.UserService;
+import com.backend.backend.service.support.UserCache;
+import lombok.RequiredArgsConstructor;
 import org.apache.shiro.crypto.hash.Md5Hash;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 /**
  * @Author: goodtimp
  * @Date: 2019/10/1 13:13
  * @description :
  */
 @Service
+@RequiredArgsConstructor(onConstructor = @_(@Autowired))
 public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements UserService {
 
+    final private UserCache userCache;
+
     @Override
     public User getUserByPhone(String phone) {
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
@@ -68,8 +81,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         // shiro中加密必须要用Md5Hash
         String saltPass = addSaltForPassword(user.getUserPassword(), user.getSalt());
         user.setUserPassword(saltPass);
-        user.setCreate();
+        user.resetAudit();
         this.save(user);
+        userCache.evict(user.getUserId());
         return user;
     }
 
@@ -78,6 +92,105 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         return null;
     }
 
+    @Override
+    public User getCachedById(Long userId) {
+        return userCache.get(userId);
+    }
+
+    @Override
+    public Map<String, Object> getCacheStats() {
+        return userCache.stats();
+    }
+
+    /**
+     * 修改用户后清除缓存
+     */
+    @Override
+    public boolean updateById(User entity) {
+        boolean result = super.updateById(entity);
+        userCache.evict(entity.getUserId());
+        return result;
+    }
+
+    /**
+     * 按条件修改，修改前查出命中的用户，修改后清除缓存；update(wrapper)也走这里
+     * 通过update()、lambdaUpdate()链式调用会直接访问mapper，不经过这里，修改用户时不要使用
+     */
+    @Override
+    public boolean update(User entity, Wrapper<User> updateWrapper) {
+        List<Long> ids = matchedIds(updateWrapper);
+        boolean result = super.update(entity, updateWrapper);
+        if (entity != null) {
+            userCache.evict(entity.getUserId());
+        }
+        ids.forEach(userCache::evict);
+        return result;
+    }
+
+    @Override
+    public boolean saveOrUpdate(User entity) {
+        boolean result = super.saveOrUpdate(entity);
+        if (entity != null) {
+            userCache.evict(entity.getUserId());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean updateBatchById(Collection<User> entityList, int batchSize) {
+        boolean result = super.updateBatchById(entityList, batchSize);
+        entityList.forEach(user -> userCache.evict(user.getUserId()));
+        return result;
+    }
+
+    @Override
+    public boolean saveOrUpdateBatch(Collection<User> entityList, int batchSize) {
+        boolean result = super.saveOrUpdateBatch(entityList, batchSize);
+        entityList.forEach(user -> userCache.evict(user.getUserId()));
+        return result;
+    }
+
+    /**
+     * 删除用户后清除缓存
+     */
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean result = super.removeById(id);
+        userCache.evict(Long.valueOf(id.toString()));
+        return result;
+    }
+
+    @Override
+    public boolean removeByIds(Collection<? extends Serializable> idList) {
+        boolean result = super.removeByIds(idList);
+        idList.forEach(id -> userCache.evict(Long.valueOf(id.toString())));
+        return result;
+    }
+
+    @Override
+    public boolean remove(Wrapper<User> queryWrapper) {
+        List<Long> ids = matchedIds(queryWrapper);
+        boolean result = super.remove(queryWrapper);
+        ids.forEach(userCache::evict);
+        return result;
+    }
+
+    /**
+     * 条件命中的用户Id；没有指定查询列时第一列是主键
+     */
+    private List<Long> matchedIds(Wrapper<User> wrapper) {
+        List<Long> ids = new ArrayList<>();
+        if (wrapper == null) {
+            return ids;
+        }
+        for (Object id : baseMapper.selectObjs(wrapper)) {
+            if (id != null) {
+                ids.add(Long.valueOf(id.toString()));
+            }
+        }
+        return ids;
+    }
+
 
     private String addSaltForPassword(String password, String salt) {
         // shiro中默认加密必须要用Md5Hash
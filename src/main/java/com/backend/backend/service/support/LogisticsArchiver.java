@@ -0,0 +1,169 @@
+package com.backend.backend.service.support;
+
+import com.backend.backend.common.Tools;
+import com.backend.backend.dao.LogisticsArchiveMapper;
+import com.backend.backend.dao.LogisticsMapper;
+import com.backend.backend.enums.DelFlagEnum;
+import com.backend.backend.enums.LogisticsTypeEnum;
+import com.backend.backend.model.entity.Logistics;
+import com.backend.backend.redis.RedisUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.backend.backend.enums.RedisEnum.ARCHIVE_JOB_LOCK;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 22:15
+ * @description :  物流信息归档
+ * 把逻辑删除的和签收超过signed-days天的物流信息从logistics移到logistics_archive，热表只保留仍在流转的数据。
+ * 每批在一个事务中锁定、复制、删除，批与批之间停顿，单次运行有批数上限，避免长事务和主从延迟；
+ * 多个节点通过Redis锁保证同时只有一个在执行。移走的记录每批提交后整批按ARCHIVE通知监听，清理各索引和计数。
+ * 需要先执行resources/sql/logistics_archive.sql建表，默认关闭。
+ */
+@Component
+public class LogisticsArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogisticsArchiver.class);
+
+    private final LogisticsMapper logisticsMapper;
+    private final LogisticsArchiveMapper logisticsArchiveMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final LogisticsChangeDispatcher changeDispatcher;
+
+    private final boolean enabled;
+    private final int signedDays;
+    private final int batchSize;
+    private final long batchInterval;
+    private final int maxBatches;
+
+    @Autowired
+    public LogisticsArchiver(LogisticsMapper logisticsMapper,
+                             LogisticsArchiveMapper logisticsArchiveMapper,
+                             PlatformTransactionManager transactionManager,
+                             LogisticsChangeDispatcher changeDispatcher,
+                             @Value("${logistics.archive.enabled:false}") boolean enabled,
+                             @Value("${logistics.archive.signed-days:30}") int signedDays,
+                             @Value("${logistics.archive.batch-size:500}") int batchSize,
+                             @Value("${logistics.archive.batch-interval:200}") long batchInterval,
+                             @Value("${logistics.archive.max-batches:200}") int maxBatches) {
+        this.logisticsMapper = logisticsMapper;
+        this.logisticsArchiveMapper = logisticsArchiveMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.changeDispatcher = changeDispatcher;
+        this.enabled = enabled;
+        this.signedDays = signedDays;
+        this.batchSize = batchSize;
+        this.batchInterval = batchInterval;
+        this.maxBatches = maxBatches;
+    }
+
+    /**
+     * 定时归档
+     */
+    @Scheduled(cron = "${logistics.archive.cron:0 0 4 * * ?}")
+    public void archiveJob() {
+        if (!enabled) {
+            return;
+        }
+        // 锁的时间按最长运行时间估算，运行结束后主动释放；值为本次运行的token，超时后锁被其他节点拿到时不会误删
+        long lockTime = maxBatches * (batchInterval + 5000L);
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(RedisUtil.setIfAbsent(ARCHIVE_JOB_LOCK.getCode(), token, lockTime))) {
+            return;
+        }
+        try {
+            long archived = archive();
+            logger.info("物流信息归档完成，共" + archived + "条");
+        } catch (Exception e) {
+            logger.error("物流信息归档出现异常:" + e.getMessage());
+        } finally {
+            if (!RedisUtil.releaseIfEquals(ARCHIVE_JOB_LOCK.getCode(), token)) {
+                logger.warn("物流信息归档运行超过锁的时间，锁已过期");
+            }
+        }
+    }
+
+    /**
+     * 执行一次归档，最多maxBatches批
+     *
+     * @return 归档条数
+     */
+    public long archive() {
+        Date signedBefore = new Date(Tools.getGMT8Time().getTime() - signedDays * 24L * 3600 * 1000);
+        long archived = 0L;
+        Long lastId = null;
+        for (int i = 0; i < maxBatches; i++) {
+            List<Logistics> candidates = nextCandidates(lastId, signedBefore);
+            if (candidates.isEmpty()) {
+                break;
+            }
+            lastId = candidates.get(candidates.size() - 1).getLogId();
+            archived += archiveBatch(candidates, signedBefore);
+            if (candidates.size() < batchSize) {
+                break;
+            }
+            try {
+                Thread.sleep(batchInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * 按主键顺序取下一批候选，不加锁
+     */
+    private List<Logistics> nextCandidates(Long lastId, Date signedBefore) {
+        QueryWrapper<Logistics> queryWrapper = new QueryWrapper<>();
+        queryWrapper.lambda().gt(lastId != null, Logistics::getLogId, lastId)
+                .and(w -> w.eq(Logistics::getDelFlag, DelFlagEnum.DELETE.getCode())
+                        .or(v -> v.eq(Logistics::getType, LogisticsTypeEnum.SIGNED.getCode())
+                                .lt(Logistics::getUpdateTime, signedBefore)))
+                .orderByAsc(Logistics::getLogId)
+                .last("LIMIT " + batchSize);
+        return logisticsMapper.selectList(queryWrapper);
+    }
+
+    /**
+     * 一个事务内锁定仍满足条件的记录，复制到归档表后删除
+     *
+     * @return 归档条数
+     */
+    private int archiveBatch(List<Logistics> candidates, Date signedBefore) {
+        List<Long> ids = candidates.stream().map(Logistics::getLogId).collect(Collectors.toList());
+        Date archiveTime = Tools.getGMT8Time();
+        List<Long> archivedIds = transactionTemplate.execute(status -> {
+            List<Long> locked = logisticsArchiveMapper.lockArchivable(ids, DelFlagEnum.DELETE.getCode(),
+                    LogisticsTypeEnum.SIGNED.getCode(), signedBefore);
+            if (locked.isEmpty()) {
+                return locked;
+            }
+            logisticsArchiveMapper.copyFromLogistics(locked, archiveTime);
+            logisticsArchiveMapper.deleteFromLogistics(locked);
+            return locked;
+        });
+        if (archivedIds == null || archivedIds.isEmpty()) {
+            return 0;
+        }
+        Set<Long> archivedSet = new HashSet<>(archivedIds);
+        // 事务已提交，整批通知
+        changeDispatcher.publish(candidates.stream()
+                .filter(logistics -> archivedSet.contains(logistics.getLogId()))
+                .map(LogisticsChange::archive)
+                .collect(Collectors.toList()));
+        return archivedIds.size();
+    }
+}
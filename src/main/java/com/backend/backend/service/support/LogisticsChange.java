@@ -0,0 +1,59 @@
+package com.backend.backend.service.support;
+
+import com.backend.backend.model.entity.Logistics;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 10:00
+ * @description :  一条物流信息变更，交给LogisticsChangeListener批量处理
+ */
+public final class LogisticsChange {
+
+    public enum Action {
+        SAVE, UPDATE, DELETE, ARCHIVE
+    }
+
+    private final Action action;
+    private final Logistics before;
+    private final Logistics after;
+
+    private LogisticsChange(Action action, Logistics before, Logistics after) {
+        this.action = action;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static LogisticsChange save(Logistics logistics) {
+        return new LogisticsChange(Action.SAVE, null, logistics);
+    }
+
+    public static LogisticsChange update(Logistics before, Logistics after) {
+        return new LogisticsChange(Action.UPDATE, before, after);
+    }
+
+    public static LogisticsChange delete(Logistics before) {
+        return new LogisticsChange(Action.DELETE, before, null);
+    }
+
+    public static LogisticsChange archive(Logistics before) {
+        return new LogisticsChange(Action.ARCHIVE, before, null);
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * 变更前的记录，新增时为null
+     */
+    public Logistics getBefore() {
+        return before;
+    }
+
+    /**
+     * 变更后的记录，删除、归档时为null
+     */
+    public Logistics getAfter() {
+        return after;
+    }
+}
@@ -0,0 +1,86 @@
+package com.backend.backend.service.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 10:05
+ * @description :  物流信息变更的通知
+ * 在事务中时先记下，提交后整批交给每个监听一次；事务回滚时丢弃，监听不会看到未提交的数据。
+ * 不在事务中时（单条语句已自动提交）立即通知。单个监听抛出的异常只记录日志。
+ */
+@Component
+public class LogisticsChangeDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogisticsChangeDispatcher.class);
+
+    private final List<LogisticsChangeListener> changeListeners;
+
+    @Autowired
+    public LogisticsChangeDispatcher(List<LogisticsChangeListener> changeListeners) {
+        this.changeListeners = changeListeners;
+    }
+
+    public void publish(LogisticsChange change) {
+        publish(Collections.singletonList(change));
+    }
+
+    /**
+     * @param changes 按发生顺序
+     */
+    public void publish(List<LogisticsChange> changes) {
+        if (changes == null || changes.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch(changes);
+            return;
+        }
+        pendingChanges().addAll(changes);
+    }
+
+    /**
+     * 当前事务中记下的变更，第一次取时注册提交后的通知
+     */
+    @SuppressWarnings("unchecked")
+    private List<LogisticsChange> pendingChanges() {
+        List<LogisticsChange> pending = (List<LogisticsChange>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        List<LogisticsChange> created = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                dispatch(created);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(LogisticsChangeDispatcher.this);
+            }
+        });
+        return created;
+    }
+
+    private void dispatch(List<LogisticsChange> changes) {
+        List<LogisticsChange> batch = Collections.unmodifiableList(new ArrayList<>(changes));
+        for (LogisticsChangeListener listener : changeListeners) {
+            try {
+                listener.onChanges(batch);
+            } catch (Exception e) {
+                logger.error("物流信息变更通知" + listener.getClass().getSimpleName() + "出现异常:" + e.getMessage());
+            }
+        }
+    }
+}
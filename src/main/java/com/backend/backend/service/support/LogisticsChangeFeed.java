@@ -0,0 +1,447 @@
+package com.backend.backend.service.support;
+
+import com.backend.backend.common.model.LogisticsChangeEvent;
+import com.backend.backend.model.entity.Logistics;
+import com.backend.backend.redis.RedisUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static com.backend.backend.enums.RedisEnum.LOGISTICS_CHANGE_TOPIC;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 21:25
+ * @description :  物流信息变更的SSE推送
+ * 写库提交后把一批变更事件作为一条消息发布到Redis频道，每个节点（包括自己）收到后推送给本节点订阅了对应驿站或手机号的连接。
+ * 每个连接有一个有界队列，由共用的发送线程写出；队列满说明客户端读得太慢，直接断开，客户端重连后重新拉取列表。
+ * SseEmitter.send是阻塞写，客户端不读时会一直占着发送线程：定时检查每次写的耗时，超过write-timeout的连接断开，
+ * 并临时给发送线程池加一个线程顶替被占住的线程，写返回后再减回来，几个卡住的客户端不会让所有连接都收不到推送。
+ * 定时发送注释行作为心跳，避免代理因空闲断开连接。
+ */
+@Component
+public class LogisticsChangeFeed implements LogisticsChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogisticsChangeFeed.class);
+
+    /**
+     * 队列中的心跳标记
+     */
+    private static final Object HEARTBEAT = new Object();
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final long timeout;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final int senderThreads;
+    private final int maxStalledSends;
+    private final long writeTimeoutNanos;
+
+    /**
+     * 驿站Id -> 订阅者
+     */
+    private final Map<Long, Set<Subscriber>> byPostId = new ConcurrentHashMap<>();
+    /**
+     * 手机号 -> 订阅者
+     */
+    private final Map<String, Set<Subscriber>> byPhone = new ConcurrentHashMap<>();
+
+    private final AtomicLong subscriberCount = new AtomicLong();
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder stalledCount = new LongAdder();
+
+    /**
+     * 被卡住的写临时占用的额外线程数
+     */
+    private final AtomicInteger stalledSends = new AtomicInteger();
+
+    /**
+     * 发送线程，所有连接共用
+     */
+    private final ThreadPoolExecutor sender;
+
+    @Autowired
+    public LogisticsChangeFeed(RedisTemplate<String, Object> redisTemplate,
+                               RedisMessageListenerContainer listenerContainer,
+                               @Value("${logistics.change-feed.timeout:1800000}") long timeout,
+                               @Value("${logistics.change-feed.buffer-size:256}") int bufferSize,
+                               @Value("${logistics.change-feed.max-subscribers:5000}") int maxSubscribers,
+                               @Value("${logistics.change-feed.sender-threads:4}") int senderThreads,
+                               @Value("${logistics.change-feed.write-timeout:5000}") long writeTimeout,
+                               @Value("${logistics.change-feed.max-stalled-sends:64}") int maxStalledSends) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.timeout = timeout;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.senderThreads = senderThreads;
+        this.maxStalledSends = maxStalledSends;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeout);
+        AtomicLong threadCount = new AtomicLong();
+        // 平时只有senderThreads个线程，有写被卡住时调大核心线程数
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads + maxStalledSends,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "logistics-sse-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 订阅所有节点发出的变更事件
+     */
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (body instanceof LogisticsChangeEvent) {
+                dispatch((LogisticsChangeEvent) body);
+            } else if (body instanceof List) {
+                for (Object event : (List<?>) body) {
+                    if (event instanceof LogisticsChangeEvent) {
+                        dispatch((LogisticsChangeEvent) event);
+                    }
+                }
+            }
+        }, new ChannelTopic(LOGISTICS_CHANGE_TOPIC.getCode()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        forEachSubscriber(subscriber -> subscriber.emitter.complete());
+    }
+
+    /**
+     * 新建一个SSE连接，驿站Id和手机号至少一个
+     *
+     * @param postId 驿站Id
+     * @param phone  收件人手机号
+     * @return
+     * @throws IllegalStateException 本节点连接数已满
+     */
+    public SseEmitter open(Long postId, String phone) {
+        if (postId == null && (phone == null || phone.trim().isEmpty())) {
+            throw new IllegalArgumentException("驿站Id和手机号至少需要一个");
+        }
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new IllegalStateException("连接数过多，请稍后再试");
+        }
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeout), postId,
+                phone == null || phone.trim().isEmpty() ? null : phone.trim(), bufferSize);
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> remove(subscriber));
+        subscriber.emitter.onError(e -> remove(subscriber));
+        if (subscriber.postId != null) {
+            byPostId.computeIfAbsent(subscriber.postId, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        if (subscriber.phone != null) {
+            byPhone.computeIfAbsent(subscriber.phone, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        // 先发一条心跳，让客户端和代理尽快确认连接建立
+        offer(subscriber, HEARTBEAT, false);
+        return subscriber.emitter;
+    }
+
+    /**
+     * 一批变更发布一条消息；归档不是业务变更，不推送
+     */
+    @Override
+    public void onChanges(List<LogisticsChange> changes) {
+        long time = System.currentTimeMillis();
+        ArrayList<LogisticsChangeEvent> events = new ArrayList<>(changes.size());
+        for (LogisticsChange change : changes) {
+            LogisticsChangeEvent event = toEvent(change, time);
+            if (event != null && event.getData() != null && event.getData().getLogId() != null) {
+                events.add(event);
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        publishedCount.add(events.size());
+        RedisUtil.convertAndSend(LOGISTICS_CHANGE_TOPIC.getCode(), events);
+    }
+
+    /**
+     * 统计
+     *
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscriberCount.get());
+        stats.put("published", publishedCount.sum());
+        stats.put("delivered", deliveredCount.sum());
+        stats.put("dropped", droppedCount.sum());
+        stats.put("stalled", stalledCount.sum());
+        stats.put("stalledSends", stalledSends.get());
+        return stats;
+    }
+
+    /**
+     * 心跳
+     */
+    @Scheduled(fixedDelayString = "${logistics.change-feed.heartbeat-interval:15000}")
+    public void heartbeat() {
+        forEachSubscriber(subscriber -> offer(subscriber, HEARTBEAT, false));
+    }
+
+    /**
+     * 检查正在进行的写，超过write-timeout的断开连接，并加一个发送线程顶替
+     * 卡住的线程还在send的锁里，这里只把连接移出订阅，由发送线程写返回后结束连接
+     */
+    @Scheduled(fixedDelayString = "${logistics.change-feed.stall-check-interval:1000}")
+    public void checkStalledSends() {
+        long now = System.nanoTime();
+        forEachSubscriber(subscriber -> {
+            long started = subscriber.sendStartedAt;
+            if (started == 0L || now - started <= writeTimeoutNanos) {
+                return;
+            }
+            synchronized (subscriber) {
+                if (subscriber.sendStartedAt != started || subscriber.holdsExtraThread) {
+                    return;
+                }
+                if (stalledSends.incrementAndGet() <= maxStalledSends) {
+                    subscriber.holdsExtraThread = true;
+                    resizeSender();
+                } else {
+                    stalledSends.decrementAndGet();
+                }
+            }
+            stalledCount.increment();
+            logger.warn("SSE连接写入超过" + TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos) + "毫秒，断开:postId="
+                    + subscriber.postId + ", phone=" + subscriber.phone);
+            remove(subscriber);
+        });
+    }
+
+    private static LogisticsChangeEvent toEvent(LogisticsChange change, long time) {
+        Logistics before = change.getBefore();
+        switch (change.getAction()) {
+            case SAVE:
+                return new LogisticsChangeEvent(LogisticsChangeEvent.SAVE, change.getAfter(), null, null, null, time);
+            case UPDATE:
+                return new LogisticsChangeEvent(LogisticsChangeEvent.UPDATE, change.getAfter(), before.getType(),
+                        before.getPostId(), before.getPhone(), time);
+            case DELETE:
+                return new LogisticsChangeEvent(LogisticsChangeEvent.DELETE, before, null, null, null, time);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 推送给本节点订阅了相关驿站或手机号的连接，同一连接只推一次
+     */
+    private void dispatch(LogisticsChangeEvent event) {
+        Logistics data = event.getData();
+        Set<Subscriber> targets = new HashSet<>();
+        collect(byPostId, data.getPostId(), targets);
+        collect(byPostId, event.getBeforePostId(), targets);
+        collect(byPhone, data.getPhone(), targets);
+        collect(byPhone, event.getBeforePhone(), targets);
+        if (targets.isEmpty()) {
+            return;
+        }
+        for (Subscriber subscriber : targets) {
+            offer(subscriber, event, true);
+        }
+    }
+
+    private static <K> void collect(Map<K, Set<Subscriber>> index, K key, Set<Subscriber> targets) {
+        if (key == null) {
+            return;
+        }
+        Set<Subscriber> subscribers = index.get(key);
+        if (subscribers != null) {
+            targets.addAll(subscribers);
+        }
+    }
+
+    /**
+     * 放入连接的队列并安排发送
+     *
+     * @param dropIfFull 队列满时是否断开，心跳不需要
+     */
+    private void offer(Subscriber subscriber, Object event, boolean dropIfFull) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+        if (!subscriber.queue.offer(event)) {
+            if (dropIfFull) {
+                droppedCount.increment();
+                logger.warn("SSE连接消费过慢，断开:postId=" + subscriber.postId + ", phone=" + subscriber.phone);
+                close(subscriber);
+            }
+            return;
+        }
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    /**
+     * 同一连接同时只有一个线程在发送，发完后再检查一次，避免漏掉刚放入的事件
+     */
+    private void drain(Subscriber subscriber) {
+        try {
+            Object event;
+            while (!subscriber.closed.get() && (event = subscriber.queue.poll()) != null) {
+                subscriber.sendStartedAt = System.nanoTime();
+                try {
+                    subscriber.emitter.send(toSseEvent(event));
+                } finally {
+                    sendFinished(subscriber);
+                }
+                if (event != HEARTBEAT) {
+                    deliveredCount.increment();
+                }
+            }
+        } catch (Exception e) {
+            // 客户端已断开
+            remove(subscriber);
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // 先放开draining再检查，与close配合保证连接总会被结束一次
+        if (subscriber.closed.get()) {
+            completeIfIdle(subscriber);
+        } else if (!subscriber.queue.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    /**
+     * 一次写结束，写期间被判定为卡住的归还额外线程
+     */
+    private void sendFinished(Subscriber subscriber) {
+        synchronized (subscriber) {
+            subscriber.sendStartedAt = 0L;
+            if (subscriber.holdsExtraThread) {
+                subscriber.holdsExtraThread = false;
+                stalledSends.decrementAndGet();
+                resizeSender();
+            }
+        }
+    }
+
+    private synchronized void resizeSender() {
+        sender.setCorePoolSize(senderThreads + Math.max(0, Math.min(stalledSends.get(), maxStalledSends)));
+    }
+
+    /**
+     * SseEventBuilder构建时会修改自身，不能在多个连接间共用，每次发送新建
+     */
+    private static SseEmitter.SseEventBuilder toSseEvent(Object event) {
+        if (event == HEARTBEAT) {
+            return SseEmitter.event().comment("ping");
+        }
+        LogisticsChangeEvent changeEvent = (LogisticsChangeEvent) event;
+        return SseEmitter.event()
+                .id(changeEvent.getData().getLogId() + ":" + changeEvent.getTime())
+                .name("logistics")
+                .data(changeEvent, MediaType.APPLICATION_JSON);
+    }
+
+    private void close(Subscriber subscriber) {
+        remove(subscriber);
+        completeIfIdle(subscriber);
+    }
+
+    /**
+     * 没有线程在发送时结束连接；正在发送的由发送线程结束，不在send的锁上等待
+     */
+    private void completeIfIdle(Subscriber subscriber) {
+        if (!subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (subscriber.completed.compareAndSet(false, true)) {
+                subscriber.emitter.complete();
+            }
+        } catch (Exception e) {
+            // 连接已经关闭
+        } finally {
+            subscriber.draining.set(false);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        subscriber.queue.clear();
+        if (subscriber.postId != null) {
+            byPostId.computeIfPresent(subscriber.postId, (k, set) -> set.remove(subscriber) && set.isEmpty() ? null : set);
+        }
+        if (subscriber.phone != null) {
+            byPhone.computeIfPresent(subscriber.phone, (k, set) -> set.remove(subscriber) && set.isEmpty() ? null : set);
+        }
+    }
+
+    private void forEachSubscriber(Consumer<Subscriber> action) {
+        Set<Subscriber> all = new HashSet<>();
+        byPostId.values().forEach(all::addAll);
+        byPhone.values().forEach(all::addAll);
+        all.forEach(action);
+    }
+
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        private final Long postId;
+        private final String phone;
+        private final BlockingQueue<Object> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        /**
+         * 当前这次写开始的System.nanoTime()，没有在写时为0
+         */
+        private volatile long sendStartedAt;
+        /**
+         * 当前这次写被判定为卡住，占用了一个额外线程，由对象锁保护
+         */
+        private boolean holdsExtraThread;
+
+        private Subscriber(SseEmitter emitter, Long postId, String phone, int bufferSize) {
+            this.emitter = emitter;
+            this.postId = postId;
+            this.phone = phone;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.backend.backend.service.support;
+
+import com.backend.backend.model.entity.Logistics;
+
+import java.util.List;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 17:50
+ * @description :  物流信息变更监听
+ * 写库提交后由LogisticsChangeDispatcher按批通知所有实现了该接口的bean，单个监听抛出的异常只记录日志，不影响写库结果。
+ * 传入的都是数据库中的完整记录。需要访问Redis的监听应覆盖onChanges，一批变更只访问一次。
+ */
+public interface LogisticsChangeListener {
+
+    /**
+     * 一批已提交的变更，默认逐条分发到下面的方法
+     *
+     * @param changes 按发生顺序
+     */
+    default void onChanges(List<LogisticsChange> changes) {
+        for (LogisticsChange change : changes) {
+            switch (change.getAction()) {
+                case SAVE:
+                    onSave(change.getAfter());
+                    break;
+                case UPDATE:
+                    onUpdate(change.getBefore(), change.getAfter());
+                    break;
+                case DELETE:
+                    onDelete(change.getBefore());
+                    break;
+                case ARCHIVE:
+                    onArchive(change.getBefore());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 新增之后
+     *
+     * @param logistics 新增的记录
+     */
+    default void onSave(Logistics logistics) {
+    }
+
+    /**
+     * 修改之后
+     *
+     * @param before 修改前的记录
+     * @param after  修改后的记录
+     */
+    default void onUpdate(Logistics before, Logistics after) {
+    }
+
+    /**
+     * 逻辑删除之后
+     *
+     * @param before 删除前的记录
+     */
+    default void onDelete(Logistics before) {
+    }
+
+    /**
+     * 移入归档表之后，对热表而言等同于删除；默认按删除处理
+     *
+     * @param before 归档前的记录，可能已经是逻辑删除的
+     */
+    default void onArchive(Logistics before) {
+        onDelete(before);
+    }
+}
@@ -0,0 +1,397 @@
+package com.backend.backend.service.support;
+
+import com.backend.backend.dao.LogisticsMapper;
+import com.backend.backend.enums.DelFlagEnum;
+import com.backend.backend.model.entity.Logistics;
+import com.backend.backend.redis.RedisUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static com.backend.backend.enums.RedisEnum.LOGISTICS_SEARCH_INDEX_PREFIX;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 18:40
+ * @description :  物流信息的n-gram倒排索引
+ * 对产品名称、收货地址、发货地址按字做一元和二元切分（中文没有空格分词），
+ * 每个字段的每个gram一个Redis set：index:search:{gen}:{field}:{gram}，成员为logId；
+ * 每个驿站一个set：index:search:{gen}:post:{postId}，用于按驿站过滤。
+ * gen是索引的代号，全量建立写入新的一代，完成后切换并删除旧的一代，已删除或已改动的条目不会残留；
+ * 建立期间的增量变更同时写入当前代和正在建立的一代。
+ * 检索时取关键词的gram，在Lua脚本中从最稀有的gram(按驿站过滤时先与驿站求交)得到候选集，再对候选集计分，
+ * 按命中gram数和字段权重排序返回logId；停用gram和候选集都有上限，单次检索不会长时间占用Redis。
+ * 通过LogisticsChangeListener按批增量维护，首次启动时从数据库全量建立，之后每天重新建立一次。
+ */
+@Component
+public class LogisticsSearchIndex implements LogisticsChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogisticsSearchIndex.class);
+
+    /**
+     * 关键词最多取多少个gram
+     */
+    private static final int MAX_QUERY_GRAMS = 32;
+
+    /**
+     * 一个gram在各字段中的条数之和超过该值时视为停用gram，检索时忽略
+     */
+    private static final int STOP_GRAM_SIZE = 3000;
+
+    /**
+     * 候选集的最大条数，超过时不再计分，提示关键词太宽泛
+     */
+    private static final int MAX_CANDIDATES = 20000;
+
+    private static final String OVERFLOW = "overflow";
+
+    /**
+     * 全量建立时每多少条执行一次管道
+     */
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private static final String STATION_KEY = "post:";
+    private static final String TEMP_KEY = "tmp";
+    private static final String GRAM_TEMP_KEY = "tmp:gram";
+    private static final String FIELD_TEMP_KEY = "tmp:field";
+    /**
+     * 当前代号
+     */
+    private static final String GEN_KEY = "gen";
+    /**
+     * 分配代号的计数器
+     */
+    private static final String GEN_SEQ_KEY = "gen:seq";
+    /**
+     * 正在建立的代号，同时作为建立的锁
+     */
+    private static final String BUILDING_KEY = "building";
+
+    /**
+     * 建立索引的锁的存在时间(毫秒)，超时后其他节点可以重新建立
+     */
+    private static final long BUILD_LOCK_TIME = 3600 * 1000L;
+
+    private static final DefaultRedisScript<List> SEARCH_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        SEARCH_SCRIPT.setLocation(new ClassPathResource("lua/search_logistics.lua"));
+        SEARCH_SCRIPT.setResultType(List.class);
+    }
+
+    /**
+     * 建立索引的字段
+     */
+    private enum Field {
+        PRODUCT_NAME("productName", 3, Logistics::getProductName),
+        DELIVERY_ADDRESS("deliveryAddress", 1, Logistics::getDeliveryAddress),
+        SHIP_ADDRESS("shipAddress", 1, Logistics::getShipAddress);
+
+        private final String name;
+        private final int weight;
+        private final Function<Logistics, String> getter;
+
+        Field(String name, int weight, Function<Logistics, String> getter) {
+            this.name = name;
+            this.weight = weight;
+            this.getter = getter;
+        }
+    }
+
+    private final LogisticsMapper logisticsMapper;
+
+    @Autowired
+    public LogisticsSearchIndex(LogisticsMapper logisticsMapper) {
+        this.logisticsMapper = logisticsMapper;
+    }
+
+    /**
+     * 检索
+     *
+     * @param keyword 关键词
+     * @param postId  驿站Id，为空时不过滤
+     * @param limit   最多返回条数
+     * @return 按相关度从高到低的logId
+     */
+    public List<Long> search(String keyword, Long postId, int limit) {
+        List<String> grams = queryGrams(keyword);
+        if (grams.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Object current = RedisUtil.get(key(GEN_KEY));
+        if (!(current instanceof Number)) {
+            return Collections.emptyList();
+        }
+        long gen = ((Number) current).longValue();
+        List<String> keys = new ArrayList<>();
+        keys.add(key(TEMP_KEY));
+        keys.add(key(GRAM_TEMP_KEY));
+        keys.add(key(FIELD_TEMP_KEY));
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(limit));
+        if (postId != null) {
+            keys.add(key(gen + ":" + STATION_KEY + postId));
+            args.add("1");
+        } else {
+            args.add("0");
+        }
+        args.add(String.valueOf(STOP_GRAM_SIZE));
+        args.add(String.valueOf(MAX_CANDIDATES));
+        args.add(String.valueOf(Field.values().length));
+        for (Field field : Field.values()) {
+            args.add(String.valueOf(field.weight));
+        }
+        for (String gram : grams) {
+            for (Field field : Field.values()) {
+                keys.add(gramKey(gen, field, gram));
+            }
+        }
+        List<String> result = RedisUtil.executeForStringList(SEARCH_SCRIPT, keys, args.toArray(new String[0]));
+        if (result != null && result.size() == 1 && OVERFLOW.equals(result.get(0))) {
+            throw new IllegalArgumentException(postId == null ? "关键词匹配的物流太多，请指定驿站或输入更多的字"
+                    : "关键词匹配的物流太多，请输入更多的字");
+        }
+        List<Long> ids = new ArrayList<>();
+        if (result != null) {
+            // 返回的是 logId, 得分, logId, 得分 ...
+            for (int i = 0; i < result.size(); i += 2) {
+                ids.add(Long.parseLong(result.get(i)));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 一批变更按顺序在一个管道中执行，写入当前代和正在建立的一代
+     */
+    @Override
+    public void onChanges(List<LogisticsChange> changes) {
+        Set<Long> gens = new LinkedHashSet<>();
+        for (Object gen : RedisUtil.mget(Arrays.asList(key(GEN_KEY), key(BUILDING_KEY)))) {
+            if (gen instanceof Number) {
+                gens.add(((Number) gen).longValue());
+            }
+        }
+        List<RedisUtil.SetChange> setChanges = new ArrayList<>();
+        for (Long gen : gens) {
+            for (LogisticsChange change : changes) {
+                switch (change.getAction()) {
+                    case SAVE:
+                        addSave(setChanges, gen, change.getAfter());
+                        break;
+                    case UPDATE:
+                        addUpdate(setChanges, gen, change.getBefore(), change.getAfter());
+                        break;
+                    default:
+                        addDelete(setChanges, gen, change.getBefore());
+                        break;
+                }
+            }
+        }
+        RedisUtil.sUpdatePipelined(setChanges);
+    }
+
+    private void addSave(List<RedisUtil.SetChange> setChanges, long gen, Logistics logistics) {
+        if (indexable(logistics)) {
+            setChanges.add(RedisUtil.SetChange.add(keys(gen, logistics), logistics.getLogId()));
+        }
+    }
+
+    /**
+     * 只改动新旧不同的key
+     */
+    private void addUpdate(List<RedisUtil.SetChange> setChanges, long gen, Logistics before, Logistics after) {
+        Set<String> oldKeys = indexable(before) ? keys(gen, before) : Collections.emptySet();
+        Set<String> newKeys = indexable(after) ? keys(gen, after) : Collections.emptySet();
+        Set<String> removed = new HashSet<>(oldKeys);
+        removed.removeAll(newKeys);
+        Set<String> added = new HashSet<>(newKeys);
+        added.removeAll(oldKeys);
+        if (!removed.isEmpty()) {
+            setChanges.add(RedisUtil.SetChange.remove(removed, before.getLogId()));
+        }
+        if (!added.isEmpty()) {
+            setChanges.add(RedisUtil.SetChange.add(added, after.getLogId()));
+        }
+    }
+
+    private void addDelete(List<RedisUtil.SetChange> setChanges, long gen, Logistics before) {
+        if (before != null && before.getLogId() != null) {
+            setChanges.add(RedisUtil.SetChange.remove(keys(gen, before), before.getLogId()));
+        }
+    }
+
+    /**
+     * 从数据库全量建立新的一代索引，完成后切换为当前代并删除旧的各代
+     * 建立期间被改动的行可能因批量写入晚于增量变更而残留旧的gram，由每天的rebuildJob清除
+     *
+     * @return 建立索引的条数
+     */
+    public long rebuild() {
+        long gen = RedisUtil.incr(key(GEN_SEQ_KEY), 1L);
+        String buildingKey = key(BUILDING_KEY);
+        if (!Boolean.TRUE.equals(RedisUtil.setIfAbsent(buildingKey, gen, BUILD_LOCK_TIME))) {
+            throw new IllegalStateException("物流检索索引正在建立");
+        }
+        try {
+            QueryWrapper<Logistics> queryWrapper = new QueryWrapper<>();
+            queryWrapper.lambda().eq(Logistics::getDelFlag, DelFlagEnum.NORMAL.getCode());
+            long[] count = {0L};
+            List<RedisUtil.SetChange> setChanges = new ArrayList<>();
+            logisticsMapper.streamList(queryWrapper, context -> {
+                addSave(setChanges, gen, context.getResultObject());
+                count[0]++;
+                if (setChanges.size() >= REBUILD_BATCH_SIZE) {
+                    RedisUtil.sUpdatePipelined(setChanges);
+                    setChanges.clear();
+                }
+            });
+            RedisUtil.sUpdatePipelined(setChanges);
+            RedisUtil.set(key(GEN_KEY), gen);
+            // 持有锁时清理，之后开始的建立使用更大的代号，不会被误删
+            removeOldGenerations(gen);
+            return count[0];
+        } finally {
+            RedisUtil.releaseIfEquals(buildingKey, gen);
+        }
+    }
+
+    /**
+     * 删除代号小于gen的索引key
+     */
+    private void removeOldGenerations(long gen) {
+        String prefix = key("");
+        long[] removed = {0L};
+        RedisUtil.scan(prefix + "*", batch -> {
+            List<String> stale = new ArrayList<>();
+            for (String key : batch) {
+                String rest = key.substring(prefix.length());
+                int end = rest.indexOf(':');
+                String head = end < 0 ? rest : rest.substring(0, end);
+                if (end > 0 && isOldGeneration(head, gen)) {
+                    stale.add(key);
+                }
+            }
+            removed[0] += RedisUtil.unlink(stale);
+        });
+        logger.info("物流检索索引第" + gen + "代建立完成，删除旧索引key" + removed[0] + "个");
+    }
+
+    private static boolean isOldGeneration(String head, long gen) {
+        if (head.isEmpty() || !head.chars().allMatch(Character::isDigit)) {
+            return false;
+        }
+        // 位数过多时不是代号
+        try {
+            return Long.parseLong(head) < gen;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 启动后如果还没有建立过索引则全量建立，多个节点只有一个执行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        try {
+            if (RedisUtil.get(key(GEN_KEY)) != null || RedisUtil.get(key(BUILDING_KEY)) != null) {
+                return;
+            }
+            long count = rebuild();
+            logger.info("物流检索索引建立完成，共" + count + "条");
+        } catch (Exception e) {
+            logger.error("物流检索索引建立出现异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 每天重新建立一次，清除建立期间残留的条目；其他节点正在建立时跳过
+     */
+    @Scheduled(cron = "${logistics.search-index.rebuild-cron:0 0 4 * * ?}")
+    public void rebuildJob() {
+        if (RedisUtil.get(key(BUILDING_KEY)) != null) {
+            return;
+        }
+        try {
+            long count = rebuild();
+            logger.info("物流检索索引重新建立完成，共" + count + "条");
+        } catch (Exception e) {
+            logger.error("物流检索索引重新建立出现异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 一条物流信息在某一代中对应的所有索引key
+     */
+    private Set<String> keys(long gen, Logistics logistics) {
+        Set<String> keys = new HashSet<>();
+        for (Field field : Field.values()) {
+            for (String gram : grams(field.getter.apply(logistics), true)) {
+                keys.add(gramKey(gen, field, gram));
+            }
+        }
+        if (logistics.getPostId() != null) {
+            keys.add(key(gen + ":" + STATION_KEY + logistics.getPostId()));
+        }
+        return keys;
+    }
+
+    /**
+     * 关键词只有一个字时用一元，否则用二元
+     */
+    private static List<String> queryGrams(String keyword) {
+        List<String> grams = new ArrayList<>(grams(keyword, false));
+        if (grams.isEmpty()) {
+            grams.addAll(grams(keyword, true));
+        }
+        return grams.size() > MAX_QUERY_GRAMS ? grams.subList(0, MAX_QUERY_GRAMS) : grams;
+    }
+
+    /**
+     * 切分gram，只保留字母、数字和汉字，字母转小写
+     *
+     * @param text
+     * @param withUnigram 是否包含一元
+     * @return
+     */
+    static Set<String> grams(String text, boolean withUnigram) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (text == null) {
+            return grams;
+        }
+        int[] chars = text.codePoints().filter(Character::isLetterOrDigit).map(Character::toLowerCase).toArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (withUnigram) {
+                grams.add(new String(chars, i, 1));
+            }
+            if (i + 1 < chars.length) {
+                grams.add(new String(chars, i, 2));
+            }
+        }
+        return grams;
+    }
+
+    private static boolean indexable(Logistics logistics) {
+        return logistics != null && logistics.getLogId() != null
+                && Objects.equals(logistics.getDelFlag(), DelFlagEnum.NORMAL.getCode());
+    }
+
+    private static String gramKey(long gen, Field field, String gram) {
+        return key(gen + ":" + field.name + ":" + gram);
+    }
+
+    private static String key(String suffix) {
+        return LOGISTICS_SEARCH_INDEX_PREFIX.getCode() + suffix;
+    }
+}
@@ -0,0 +1,394 @@
+package com.backend.backend.service.support;
+
+import com.backend.backend.base.AuditStamp;
+import com.backend.backend.dao.LogisticsMapper;
+import com.backend.backend.enums.DelFlagEnum;
+import com.backend.backend.model.entity.Logistics;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 00:10
+ * @description :  物流备注的延迟写
+ * 状态要按流转表和当前状态检查，始终同步写库；只有备注的修改先按logId合并在内存中，满batch-size条或每隔flush-interval毫秒批量写库，关闭时全部写完。
+ * 最多缓存max-pending个logId，满了之后新的logId直接同步写库；读取时用overlay把未写库的值覆盖到查询结果上。
+ * 同一logId的其他同步修改之前先调用flush(ids)写掉该logId的缓存，保证写入顺序。
+ * 写库时逐个认领logId，同一logId同时只有一个线程在写，不同logId的写入互不等待，请求线程的flush(ids)不会排在整批写入后面。
+ * 每次写入是独立的事务，写库成功后才从缓存移除，写库失败的留到下次重试；节点宕机时未写库的修改会丢失，默认关闭。
+ */
+@Component
+public class LogisticsWriteBehind {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogisticsWriteBehind.class);
+
+    private final LogisticsMapper logisticsMapper;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final LogisticsChangeDispatcher changeDispatcher;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxPending;
+    private final long flushInterval;
+
+    /**
+     * logId -> 合并后的修改，值不可变，合并时整个替换
+     */
+    private final ConcurrentHashMap<Long, PendingUpdate> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 正在写库的logId -> 写完时放行的latch
+     */
+    private final ConcurrentHashMap<Long, CountDownLatch> writing = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "logistics-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public LogisticsWriteBehind(LogisticsMapper logisticsMapper,
+                                SqlSessionFactory sqlSessionFactory,
+                                PlatformTransactionManager transactionManager,
+                                LogisticsChangeDispatcher changeDispatcher,
+                                @Value("${logistics.write-behind.enabled:false}") boolean enabled,
+                                @Value("${logistics.write-behind.batch-size:500}") int batchSize,
+                                @Value("${logistics.write-behind.max-pending:10000}") int maxPending,
+                                @Value("${logistics.write-behind.flush-interval:1000}") long flushInterval) {
+        this.logisticsMapper = logisticsMapper;
+        this.sqlSessionFactory = sqlSessionFactory;
+        // 请求线程在自己的事务中flush时，缓存的修改也单独提交，不随请求回滚
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.changeDispatcher = changeDispatcher;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.flushInterval = flushInterval;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!pending.isEmpty()) {
+            logger.info("关闭前写入" + pending.size() + "条延迟修改");
+            flushQuietly();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 是否有未写库的修改
+     *
+     * @param logId
+     * @return
+     */
+    public boolean isPending(Long logId) {
+        return logId != null && pending.containsKey(logId);
+    }
+
+    /**
+     * 缓存一次备注修改，覆盖同一logId未写库的备注
+     *
+     * @param logId
+     * @param remark 备注
+     * @param stamp  操作人和修改时间
+     * @return 未开启或缓存已满返回false，调用方需要同步写库
+     */
+    public boolean offer(Long logId, String remark, AuditStamp stamp) {
+        if (!enabled || logId == null || remark == null) {
+            return false;
+        }
+        PendingUpdate update = new PendingUpdate(remark, stamp);
+        // 已在缓存中的logId总是合并，新的logId受max-pending限制
+        if (pending.size() >= maxPending && !pending.containsKey(logId)) {
+            rejected.increment();
+            scheduleFlush();
+            return false;
+        }
+        PendingUpdate previous = pending.get(logId);
+        pending.put(logId, update);
+        offered.increment();
+        if (previous != null) {
+            coalesced.increment();
+        }
+        if (pending.size() >= batchSize) {
+            scheduleFlush();
+        }
+        return true;
+    }
+
+    /**
+     * 把未写库的修改覆盖到查询结果上，有修改时返回副本，不改动传入的对象（可能来自缓存）
+     *
+     * @param logistics
+     * @return
+     */
+    public Logistics overlay(Logistics logistics) {
+        if (logistics == null || pending.isEmpty()) {
+            return logistics;
+        }
+        PendingUpdate update = pending.get(logistics.getLogId());
+        return update == null ? logistics : update.applyTo(logistics);
+    }
+
+    public List<Logistics> overlay(List<Logistics> list) {
+        if (list == null || pending.isEmpty()) {
+            return list;
+        }
+        List<Logistics> result = new ArrayList<>(list.size());
+        for (Logistics logistics : list) {
+            result.add(overlay(logistics));
+        }
+        return result;
+    }
+
+    /**
+     * 立即写入指定logId的缓存修改，同步修改这些logId之前调用
+     * 其他线程正在写的logId等它写完，再写期间新合并进来的修改
+     *
+     * @param ids
+     */
+    public void flush(Collection<Long> ids) {
+        Collection<Long> remaining = ids;
+        while (!pending.isEmpty() && remaining != null && !remaining.isEmpty()) {
+            Set<Long> batch = new HashSet<>();
+            for (Long id : remaining) {
+                if (id != null && pending.containsKey(id)) {
+                    batch.add(id);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            Map<Long, CountDownLatch> busy = write(batch);
+            if (!await(busy.values())) {
+                return;
+            }
+            remaining = busy.keySet();
+        }
+    }
+
+    /**
+     * 写入全部缓存修改
+     */
+    public void flushAll() {
+        flushScheduled.set(false);
+        while (!pending.isEmpty()) {
+            Set<Long> batch = new HashSet<>();
+            for (Long id : pending.keySet()) {
+                batch.add(id);
+                if (batch.size() >= batchSize) {
+                    break;
+                }
+            }
+            Map<Long, CountDownLatch> busy = write(batch);
+            // 全部被其他线程占用时等它们写完，避免空转
+            if (busy.size() == batch.size() && !await(busy.values())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 缓存条数和写入统计
+     *
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pending", pending.size());
+        stats.put("offered", offered.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("written", written.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (Exception e) {
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flushAll();
+        } catch (Exception e) {
+            failures.increment();
+            logger.error("物流信息延迟写入库出现异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 认领没有其他线程在写的logId并写入，同一logId的新旧值不会乱序
+     *
+     * @param ids
+     * @return 其他线程正在写、本次没有写的logId及其latch
+     */
+    private Map<Long, CountDownLatch> write(Set<Long> ids) {
+        CountDownLatch latch = new CountDownLatch(1);
+        Map<Long, PendingUpdate> claimed = new HashMap<>();
+        Map<Long, CountDownLatch> busy = new HashMap<>();
+        for (Long id : ids) {
+            CountDownLatch other = writing.putIfAbsent(id, latch);
+            if (other != null) {
+                busy.put(id, other);
+                continue;
+            }
+            // 认领之后再取值，认领前已被写完的跳过
+            PendingUpdate update = pending.get(id);
+            if (update == null) {
+                writing.remove(id, latch);
+            } else {
+                claimed.put(id, update);
+            }
+        }
+        try {
+            if (!claimed.isEmpty()) {
+                write(claimed);
+            }
+        } finally {
+            for (Long id : claimed.keySet()) {
+                writing.remove(id, latch);
+            }
+            latch.countDown();
+        }
+        return busy;
+    }
+
+    /**
+     * 一个事务内批量写入，成功后只移除写入期间没有再变化的缓存；记录不存在或已删除的直接丢弃
+     */
+    private void write(Map<Long, PendingUpdate> batch) {
+        int[] count = {0};
+        transactionTemplate.execute(status -> {
+            List<LogisticsChange> changes = new ArrayList<>(batch.size());
+            try (SqlSession batchSqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+                LogisticsMapper batchMapper = batchSqlSession.getMapper(LogisticsMapper.class);
+                for (Logistics before : logisticsMapper.selectBatchIds(batch.keySet())) {
+                    if (!Objects.equals(before.getDelFlag(), DelFlagEnum.NORMAL.getCode())) {
+                        continue;
+                    }
+                    PendingUpdate update = batch.get(before.getLogId());
+                    update.writeTo(batchMapper, before.getLogId());
+                    changes.add(LogisticsChange.update(before, update.applyTo(before)));
+                }
+                batchSqlSession.flushStatements();
+            }
+            // 在本事务中发布，提交后通知
+            changeDispatcher.publish(changes);
+            count[0] = changes.size();
+            return null;
+        });
+        for (Map.Entry<Long, PendingUpdate> entry : batch.entrySet()) {
+            pending.remove(entry.getKey(), entry.getValue());
+        }
+        written.add(count[0]);
+        if (count[0] < batch.size()) {
+            logger.warn("延迟修改中" + (batch.size() - count[0]) + "条物流信息已不存在或已删除，已丢弃");
+        }
+    }
+
+    /**
+     * 等其他线程写完
+     *
+     * @return 被中断返回false
+     */
+    private static boolean await(Collection<CountDownLatch> latches) {
+        try {
+            for (CountDownLatch latch : latches) {
+                latch.await();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 合并后的一条修改，备注、操作人和时间都取最后一次修改的
+     */
+    private static final class PendingUpdate {
+        private final String remark;
+        private final AuditStamp stamp;
+
+        PendingUpdate(String remark, AuditStamp stamp) {
+            this.remark = remark;
+            this.stamp = stamp;
+        }
+
+        /**
+         * 以修改时的操作人和时间写库，审计字段由AuditMetaObjectHandler填充
+         */
+        void writeTo(LogisticsMapper mapper, Long logId) {
+            Logistics logistics = new Logistics();
+            logistics.setLogId(logId);
+            logistics.setRemark(remark);
+            AuditStamp.runAs(stamp, () -> mapper.updateById(logistics));
+        }
+
+        Logistics applyTo(Logistics source) {
+            Logistics logistics = new Logistics();
+            BeanUtils.copyProperties(source, logistics);
+            logistics.setRemark(remark);
+            logistics.setUpdateById(stamp.getUserId());
+            logistics.setUpdateBy(stamp.getUserName());
+            logistics.setUpdateTime(stamp.getTime());
+            return logistics;
+        }
+    }
+}
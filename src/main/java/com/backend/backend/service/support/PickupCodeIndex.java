@@ -0,0 +1,242 @@
+package com.backend.backend.service.support;
+
+import com.backend.backend.dao.LogisticsMapper;
+import com.backend.backend.enums.DelFlagEnum;
+import com.backend.backend.model.entity.Logistics;
+import com.backend.backend.redis.RedisUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+import static com.backend.backend.enums.RedisEnum.PICKUP_CODE_INDEX_PREFIX;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 18:00
+ * @description :  取件码索引
+ * 每个驿站一个Redis hash：index:pickup:{postId}，field为取件码，value为整条记录(含删除标志)，
+ * 柜台按(驿站Id, 取件码)查件时一次HGET即可返回，命中时不访问MySQL。
+ * 通过LogisticsChangeListener随新增、修改、删除同步，每次修改都用修改后的整条记录覆盖；
+ * 另有定时任务与数据库逐条比较并修复，变更通知乱序留下的旧记录也会被修正。
+ */
+@Component
+public class PickupCodeIndex implements LogisticsChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PickupCodeIndex.class);
+
+    private static final DefaultRedisScript<String> UPDATE_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        UPDATE_SCRIPT.setLocation(new ClassPathResource("lua/update_pickup_index.lua"));
+        UPDATE_SCRIPT.setResultType(String.class);
+    }
+
+    private final LogisticsMapper logisticsMapper;
+
+    @Autowired
+    public PickupCodeIndex(LogisticsMapper logisticsMapper) {
+        this.logisticsMapper = logisticsMapper;
+    }
+
+    /**
+     * 按驿站Id和取件码查找
+     *
+     * @param postId
+     * @param logCode
+     * @return 索引中的记录，不存在返回null
+     */
+    public Logistics get(Long postId, String logCode) {
+        if (postId == null || logCode == null) {
+            return null;
+        }
+        Object value = RedisUtil.hget(key(postId), logCode);
+        return value instanceof Logistics ? (Logistics) value : null;
+    }
+
+    /**
+     * 写入一条，已删除或缺少驿站Id、取件码的忽略
+     *
+     * @param logistics
+     */
+    public void put(Logistics logistics) {
+        Ops ops = new Ops();
+        ops.put(logistics);
+        ops.execute();
+    }
+
+    /**
+     * 一批变更按顺序用一次Lua脚本执行
+     */
+    @Override
+    public void onChanges(List<LogisticsChange> changes) {
+        Ops ops = new Ops();
+        for (LogisticsChange change : changes) {
+            switch (change.getAction()) {
+                case SAVE:
+                    ops.put(change.getAfter());
+                    break;
+                case UPDATE:
+                    ops.update(change.getBefore(), change.getAfter());
+                    break;
+                default:
+                    ops.remove(change.getBefore());
+                    break;
+            }
+        }
+        ops.execute();
+    }
+
+    /**
+     * 与数据库对账，按驿站逐个比较
+     *
+     * @param repair 是否修复不一致的条目
+     * @return 统计：rows 数据库中的条数，stations 驿站数，missing 缺少的，mismatched 指向其他记录或内容过期的，stale 多余的，staleStations 多余的驿站
+     */
+    public Map<String, Long> reconcile(boolean repair) {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        for (String name : Arrays.asList("rows", "stations", "missing", "mismatched", "stale", "staleStations")) {
+            stats.put(name, 0L);
+        }
+        Set<String> stationKeys = new HashSet<>();
+        // 按驿站排序流式读取，一次只在内存中保留一个驿站；取件码重复时以logId最大的为准，与查库时一致
+        QueryWrapper<Logistics> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("del_flag", DelFlagEnum.NORMAL.getCode())
+                .isNotNull("post_id")
+                .isNotNull("log_code")
+                .orderByAsc("post_id", "log_id");
+        Long[] currentPostId = {null};
+        Map<String, Logistics> station = new HashMap<>();
+        logisticsMapper.streamList(queryWrapper, context -> {
+            Logistics logistics = context.getResultObject();
+            if (!logistics.getPostId().equals(currentPostId[0])) {
+                if (currentPostId[0] != null) {
+                    reconcileStation(currentPostId[0], station, repair, stats);
+                    stationKeys.add(key(currentPostId[0]));
+                }
+                currentPostId[0] = logistics.getPostId();
+                station.clear();
+            }
+            station.put(logistics.getLogCode(), logistics);
+            stats.merge("rows", 1L, Long::sum);
+        });
+        if (currentPostId[0] != null) {
+            reconcileStation(currentPostId[0], station, repair, stats);
+            stationKeys.add(key(currentPostId[0]));
+        }
+        stats.put("stations", (long) stationKeys.size());
+        // 数据库中已经没有物流信息的驿站
+        RedisUtil.scan(PICKUP_CODE_INDEX_PREFIX.getCode() + "*", keys -> {
+            for (String key : keys) {
+                if (!stationKeys.contains(key)) {
+                    stats.merge("staleStations", 1L, Long::sum);
+                    if (repair) {
+                        RedisUtil.del(key);
+                    }
+                }
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * 每天对账一次，发现不一致就修复
+     */
+    @Scheduled(cron = "${logistics.pickup-index.reconcile-cron:0 30 3 * * ?}")
+    public void reconcileJob() {
+        try {
+            Map<String, Long> stats = reconcile(true);
+            logger.info("取件码索引对账完成:" + stats);
+        } catch (Exception e) {
+            logger.error("取件码索引对账出现异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * Logistics的equals只比较本身的字段，BaseEntity中会返回给柜台的删除标志、备注另外比较
+     */
+    private void reconcileStation(Long postId, Map<String, Logistics> expected, boolean repair, Map<String, Long> stats) {
+        String key = key(postId);
+        Map<Object, Object> actual = RedisUtil.hmget(key);
+        for (Map.Entry<String, Logistics> entry : expected.entrySet()) {
+            Object value = actual.get(entry.getKey());
+            if (entry.getValue().equals(value)
+                    && Objects.equals(entry.getValue().getDelFlag(), ((Logistics) value).getDelFlag())
+                    && Objects.equals(entry.getValue().getRemark(), ((Logistics) value).getRemark())) {
+                continue;
+            }
+            stats.merge(value == null ? "missing" : "mismatched", 1L, Long::sum);
+            if (repair) {
+                RedisUtil.hset(key, entry.getKey(), entry.getValue());
+            }
+        }
+        for (Object field : actual.keySet()) {
+            if (!expected.containsKey(field.toString())) {
+                stats.merge("stale", 1L, Long::sum);
+                if (repair) {
+                    RedisUtil.hdel(key, field);
+                }
+            }
+        }
+    }
+
+    private static boolean indexable(Logistics logistics) {
+        return logistics != null && logistics.getPostId() != null && logistics.getLogCode() != null
+                && Objects.equals(logistics.getDelFlag(), DelFlagEnum.NORMAL.getCode());
+    }
+
+    private static String key(Long postId) {
+        return PICKUP_CODE_INDEX_PREFIX.getCode() + postId;
+    }
+
+    /**
+     * 一组索引修改，用一次Lua脚本执行
+     */
+    private static class Ops {
+        private final List<String> keys = new ArrayList<>();
+        private final List<String> args = new ArrayList<>();
+
+        void put(Logistics logistics) {
+            if (indexable(logistics)) {
+                add("put", logistics);
+            }
+        }
+
+        /**
+         * 只删除仍指向这条记录的条目，取件码已被其他物流使用的不删
+         */
+        void remove(Logistics logistics) {
+            if (logistics != null && logistics.getLogId() != null
+                    && logistics.getPostId() != null && logistics.getLogCode() != null) {
+                add("del", logistics);
+            }
+        }
+
+        void update(Logistics before, Logistics after) {
+            if (indexable(before) && (!indexable(after)
+                    || !before.getPostId().equals(after.getPostId()) || !before.getLogCode().equals(after.getLogCode()))) {
+                remove(before);
+            }
+            put(after);
+        }
+
+        private void add(String op, Logistics logistics) {
+            keys.add(key(logistics.getPostId()));
+            args.add(op);
+            args.add(logistics.getLogCode());
+            args.add("put".equals(op) ? RedisUtil.toJson(logistics) : String.valueOf(logistics.getLogId()));
+        }
+
+        void execute() {
+            if (!keys.isEmpty()) {
+                RedisUtil.executeForString(UPDATE_SCRIPT, keys, args.toArray(new String[0]));
+            }
+        }
+    }
+}
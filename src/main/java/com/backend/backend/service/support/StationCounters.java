@@ -0,0 +1,202 @@
+package com.backend.backend.service.support;
+
+import com.backend.backend.dao.LogisticsMapper;
+import com.backend.backend.enums.DelFlagEnum;
+import com.backend.backend.enums.LogisticsTypeEnum;
+import com.backend.backend.model.entity.Logistics;
+import com.backend.backend.redis.RedisUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+import static com.backend.backend.enums.RedisEnum.STATION_STATS_PREFIX;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 21:50
+ * @description :  驿站各状态物流数量
+ * 每个驿站一个Redis hash：stats:logistics:{postId}，field为状态，value为未删除的物流数量，
+ * 通过LogisticsChangeListener随新增、修改、删除增减，查询时一次HGETALL即可，不查MySQL。
+ * 一批变更先按(驿站, 状态)合并成净增量，再在一个Lua脚本中一起HINCRBY；另有定时任务按数据库GROUP BY的结果修正偏差。
+ */
+@Component
+public class StationCounters implements LogisticsChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(StationCounters.class);
+
+    private static final DefaultRedisScript<String> INCR_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        INCR_SCRIPT.setLocation(new ClassPathResource("lua/incr_station_counters.lua"));
+        INCR_SCRIPT.setResultType(String.class);
+    }
+
+    private final LogisticsMapper logisticsMapper;
+
+    @Autowired
+    public StationCounters(LogisticsMapper logisticsMapper) {
+        this.logisticsMapper = logisticsMapper;
+    }
+
+    /**
+     * 驿站各状态的数量
+     *
+     * @param postId 驿站Id
+     * @return 状态 -> 数量，没有的状态为0
+     */
+    public Map<Integer, Long> get(Long postId) {
+        Map<Object, Object> counters = RedisUtil.hmget(key(postId));
+        Map<Integer, Long> result = new LinkedHashMap<>();
+        for (LogisticsTypeEnum type : LogisticsTypeEnum.values()) {
+            Object count = counters == null ? null : counters.get(String.valueOf(type.getCode()));
+            result.put(type.getCode(), count == null ? 0L : Long.parseLong(count.toString()));
+        }
+        return result;
+    }
+
+    /**
+     * 变更前的记录减一、变更后的加一，合并后一次写入
+     */
+    @Override
+    public void onChanges(List<LogisticsChange> changes) {
+        // key -> 状态 -> 净增量
+        Map<String, Map<String, Long>> deltas = new LinkedHashMap<>();
+        for (LogisticsChange change : changes) {
+            if (countable(change.getBefore())) {
+                addDelta(deltas, change.getBefore(), -1L);
+            }
+            if (countable(change.getAfter())) {
+                addDelta(deltas, change.getAfter(), 1L);
+            }
+        }
+        incr(deltas);
+    }
+
+    /**
+     * 与数据库对账
+     *
+     * @param repair 是否修正不一致的计数
+     * @return 统计：stations 数据库中的驿站数，mismatched 不一致的计数，staleStations 多余的驿站
+     */
+    public Map<String, Long> reconcile(boolean repair) {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        for (String name : Arrays.asList("stations", "mismatched", "staleStations")) {
+            stats.put(name, 0L);
+        }
+        QueryWrapper<Logistics> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("post_id AS postId", "type", "COUNT(*) AS count")
+                .eq("del_flag", DelFlagEnum.NORMAL.getCode())
+                .isNotNull("post_id")
+                .isNotNull("type")
+                .groupBy("post_id", "type");
+        Map<Long, Map<String, Long>> expected = new HashMap<>();
+        for (Map<String, Object> row : logisticsMapper.selectMaps(queryWrapper)) {
+            Long postId = ((Number) row.get("postId")).longValue();
+            expected.computeIfAbsent(postId, k -> new HashMap<>())
+                    .put(row.get("type").toString(), ((Number) row.get("count")).longValue());
+        }
+        Set<String> stationKeys = new HashSet<>();
+        for (Map.Entry<Long, Map<String, Long>> station : expected.entrySet()) {
+            stationKeys.add(key(station.getKey()));
+            stats.merge("mismatched", (long) reconcileStation(key(station.getKey()), station.getValue(), repair), Long::sum);
+        }
+        stats.put("stations", (long) expected.size());
+        // 数据库中已经没有物流信息的驿站，计数减到0；不直接删除，避免丢掉对账期间新增的计数
+        RedisUtil.scan(STATION_STATS_PREFIX.getCode() + "*", keys -> {
+            for (String key : keys) {
+                if (!stationKeys.contains(key) && reconcileStation(key, Collections.emptyMap(), repair) > 0) {
+                    stats.merge("staleStations", 1L, Long::sum);
+                }
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * 定时对账，发现不一致就修正
+     * 修正按差值增减，不覆盖对账期间其他写入的增减；读库与读Redis之间的写入造成的误差由下一次对账修正
+     */
+    @Scheduled(cron = "${logistics.station-stats.reconcile-cron:0 */10 * * * ?}")
+    public void reconcileJob() {
+        try {
+            Map<String, Long> stats = reconcile(true);
+            if (stats.get("mismatched") > 0 || stats.get("staleStations") > 0) {
+                logger.warn("驿站物流数量对账发现不一致:" + stats);
+            }
+        } catch (Exception e) {
+            logger.error("驿站物流数量对账出现异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 不一致的计数按 应有 - 实际 的差值一次HINCRBY修正
+     *
+     * @return 不一致的计数个数
+     */
+    private int reconcileStation(String key, Map<String, Long> expected, boolean repair) {
+        Map<Object, Object> actual = RedisUtil.hmget(key);
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : expected.entrySet()) {
+            deltas.put(entry.getKey(), entry.getValue() - count(actual.get(entry.getKey())));
+        }
+        for (Map.Entry<Object, Object> entry : actual.entrySet()) {
+            if (!expected.containsKey(entry.getKey().toString())) {
+                deltas.put(entry.getKey().toString(), -count(entry.getValue()));
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0L);
+        if (repair && !deltas.isEmpty()) {
+            incr(Collections.singletonMap(key, deltas));
+        }
+        return deltas.size();
+    }
+
+    private static long count(Object value) {
+        return value == null ? 0L : Long.parseLong(value.toString());
+    }
+
+    private static void addDelta(Map<String, Map<String, Long>> deltas, Logistics logistics, long delta) {
+        deltas.computeIfAbsent(key(logistics.getPostId()), k -> new LinkedHashMap<>())
+                .merge(field(logistics), delta, Long::sum);
+    }
+
+    /**
+     * 执行非0的增量
+     */
+    private static void incr(Map<String, Map<String, Long>> deltas) {
+        List<String> keys = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Long>> station : deltas.entrySet()) {
+            for (Map.Entry<String, Long> entry : station.getValue().entrySet()) {
+                if (entry.getValue() != 0L) {
+                    keys.add(station.getKey());
+                    args.add(entry.getKey());
+                    args.add(String.valueOf(entry.getValue()));
+                }
+            }
+        }
+        if (!keys.isEmpty()) {
+            RedisUtil.executeForString(INCR_SCRIPT, keys, args.toArray(new String[0]));
+        }
+    }
+
+    private static boolean countable(Logistics logistics) {
+        return logistics != null && logistics.getPostId() != null && logistics.getType() != null
+                && Objects.equals(logistics.getDelFlag(), DelFlagEnum.NORMAL.getCode());
+    }
+
+    private static String field(Logistics logistics) {
+        return String.valueOf(logistics.getType());
+    }
+
+    private static String key(Long postId) {
+        return STATION_STATS_PREFIX.getCode() + postId;
+    }
+}
@@ -0,0 +1,111 @@
+package com.backend.backend.service.support;
+
+import com.backend.backend.common.cache.LocalCache;
+import com.backend.backend.common.model.CursorPage;
+import com.backend.backend.datasource.DataSourceRoute;
+import com.backend.backend.model.entity.Logistics;
+import com.backend.backend.redis.RedisUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.backend.backend.enums.RedisEnum.LOGISTICS_VERSION_PREFIX;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 19:20
+ * @description :  按驿站版本号失效的查询结果缓存
+ * 每个驿站在Redis中有一个版本号，该驿站的物流新增、修改、删除提交后加一，一批变更中每个驿站只加一次。
+ * 缓存key为 驿站Id:版本号:规范化后的查询参数，版本号变了旧结果自然不再命中，所有节点都不需要知道具体的key。
+ * 同一个key同时只有一个线程查库。写入缓存的结果总是从主库加载：从库可能落后，
+ * 新版本号下缓存了从库的旧数据时，刚写过数据的用户也会读到它。
+ */
+@Component
+public class StationQueryCache implements LogisticsChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(StationQueryCache.class);
+
+    private final LocalCache<String, CursorPage<Logistics>> localCache;
+
+    private final LongAdder bypassCount = new LongAdder();
+
+    public StationQueryCache(@Value("${logistics.query-cache.local-size:10000}") int localSize,
+                             @Value("${logistics.query-cache.local-expire:60000}") long localExpire) {
+        this.localCache = new LocalCache<>(localSize, localExpire);
+    }
+
+    /**
+     * 获取某个驿站的一页查询结果
+     *
+     * @param postId 驿站Id
+     * @param params 规范化后的其他查询参数
+     * @param loader 未命中时查库
+     * @return
+     */
+    public CursorPage<Logistics> get(Long postId, String params, Supplier<CursorPage<Logistics>> loader) {
+        String version;
+        try {
+            version = version(postId);
+        } catch (Exception e) {
+            // 拿不到版本号时不走缓存
+            logger.error("获取驿站" + postId + "的数据版本号出现异常:" + e.getMessage());
+            bypassCount.increment();
+            return loader.get();
+        }
+        return localCache.get(postId + ":" + version + ":" + params, key -> DataSourceRoute.onPrimary(loader));
+    }
+
+    /**
+     * 驿站当前的数据版本号
+     *
+     * @param postId
+     * @return 没有时为"0"
+     */
+    protected String version(Long postId) {
+        Object value = RedisUtil.get(versionKey(postId));
+        return value == null ? "0" : value.toString();
+    }
+
+    /**
+     * 涉及的驿站版本号各加一，一次管道
+     */
+    @Override
+    public void onChanges(List<LogisticsChange> changes) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (LogisticsChange change : changes) {
+            addKey(keys, change.getBefore());
+            addKey(keys, change.getAfter());
+        }
+        RedisUtil.incrPipelined(keys, 1L);
+    }
+
+    /**
+     * 命中、未命中和加载耗时统计
+     *
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(localCache.stats());
+        stats.put("bypassCount", bypassCount.sum());
+        return stats;
+    }
+
+    private static void addKey(Set<String> keys, Logistics logistics) {
+        if (logistics != null && logistics.getPostId() != null) {
+            keys.add(versionKey(logistics.getPostId()));
+        }
+    }
+
+    private static String versionKey(Long postId) {
+        return LOGISTICS_VERSION_PREFIX.getCode() + postId;
+    }
+}
@@ -0,0 +1,189 @@
+package com.backend.backend.service.support;
+
+import com.backend.backend.common.cache.LocalCache;
+import com.backend.backend.dao.UserMapper;
+import com.backend.backend.model.entity.User;
+import com.backend.backend.redis.RedisUtil;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.backend.backend.enums.RedisEnum.USER_CACHE_EVICT_TOPIC;
+import static com.backend.backend.enums.RedisEnum.USER_CACHE_PREFIX;
+import static com.backend.backend.enums.RedisEnum.USER_CACHE_VERSION_PREFIX;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 14:45
+ * @description :  用户读穿透缓存
+ * 一级为本地缓存，二级为redis（可关闭），都未命中再查数据库。
+ * 缓存的用户不含密码和盐。用户数据修改后清除本节点缓存和redis缓存，并通知其他节点清除本地缓存。
+ * redis中每个用户有一个版本号，清除时加一；查库后只有版本号与查库前相同才写入redis，查库期间的清除不会被旧数据覆盖。
+ */
+@Component
+public class UserCache {
+
+    /**
+     * 版本号的存活时间(毫秒)，只需要远大于一次查库的时间
+     */
+    private static final long VERSION_EXPIRE = 3600 * 1000L;
+
+    private static final DefaultRedisScript<Long> SET_SCRIPT = new DefaultRedisScript<>();
+    private static final DefaultRedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        SET_SCRIPT.setLocation(new ClassPathResource("lua/set_user_cache.lua"));
+        SET_SCRIPT.setResultType(Long.class);
+        EVICT_SCRIPT.setLocation(new ClassPathResource("lua/evict_user_cache.lua"));
+        EVICT_SCRIPT.setResultType(Long.class);
+    }
+
+    private final UserMapper userMapper;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final LocalCache<Long, User> localCache;
+    private final boolean redisEnabled;
+    private final long redisExpire;
+
+    private final LongAdder redisHitCount = new LongAdder();
+    private final LongAdder redisMissCount = new LongAdder();
+    private final LongAdder dbLoadCount = new LongAdder();
+    private final LongAdder dbLoadNanos = new LongAdder();
+
+    @Autowired
+    public UserCache(UserMapper userMapper,
+                     RedisTemplate<String, Object> redisTemplate,
+                     RedisMessageListenerContainer listenerContainer,
+                     @Value("${user-cache.local-size:10000}") int localSize,
+                     @Value("${user-cache.local-expire:60000}") long localExpire,
+                     @Value("${user-cache.redis-enabled:true}") boolean redisEnabled,
+                     @Value("${user-cache.redis-expire:600000}") long redisExpire) {
+        this.userMapper = userMapper;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.localCache = new LocalCache<>(localSize, localExpire);
+        this.redisEnabled = redisEnabled;
+        this.redisExpire = redisExpire;
+    }
+
+    /**
+     * 订阅其他节点的清除通知
+     */
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (body != null) {
+                localCache.invalidate(Long.parseLong(body.toString()));
+            }
+        }, new ChannelTopic(USER_CACHE_EVICT_TOPIC.getCode()));
+    }
+
+    /**
+     * 通过Id获取用户，不含密码和盐
+     *
+     * @param userId
+     * @return 不存在返回null
+     */
+    public User get(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        return localCache.get(userId, this::load);
+    }
+
+    /**
+     * 用户数据被修改后调用
+     *
+     * @param userId
+     */
+    public void evict(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        localCache.invalidate(userId);
+        if (redisEnabled) {
+            RedisUtil.execute(EVICT_SCRIPT, keys(userId), VERSION_EXPIRE);
+        }
+        RedisUtil.convertAndSend(USER_CACHE_EVICT_TOPIC.getCode(), userId.toString());
+    }
+
+    /**
+     * 缓存统计
+     *
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("local", localCache.stats());
+        stats.put("redisEnabled", redisEnabled);
+        stats.put("redisHitCount", redisHitCount.sum());
+        stats.put("redisMissCount", redisMissCount.sum());
+        stats.put("dbLoadCount", dbLoadCount.sum());
+        long loads = dbLoadCount.sum();
+        stats.put("averageDbLoadMillis", loads == 0 ? 0D : (double) TimeUnit.NANOSECONDS.toMicros(dbLoadNanos.sum()) / loads / 1000D);
+        return stats;
+    }
+
+    /**
+     * 本地未命中时先查redis，再查数据库
+     */
+    private User load(Long userId) {
+        List<String> keys = keys(userId);
+        long version = 0L;
+        if (redisEnabled) {
+            List<Object> cached = RedisUtil.mget(keys);
+            if (cached.get(0) instanceof User) {
+                redisHitCount.increment();
+                return (User) cached.get(0);
+            }
+            redisMissCount.increment();
+            if (cached.get(1) instanceof Number) {
+                version = ((Number) cached.get(1)).longValue();
+            }
+        }
+        long start = System.nanoTime();
+        User user = userMapper.selectById(userId);
+        dbLoadCount.increment();
+        dbLoadNanos.add(System.nanoTime() - start);
+        if (user == null) {
+            return null;
+        }
+        User safeUser = withoutSecret(user);
+        if (redisEnabled) {
+            RedisUtil.execute(SET_SCRIPT, keys, version, safeUser, redisExpire);
+        }
+        return safeUser;
+    }
+
+    /**
+     * 用户缓存的key和版本号的key
+     */
+    private static List<String> keys(Long userId) {
+        return Arrays.asList(USER_CACHE_PREFIX.getCode() + userId, USER_CACHE_VERSION_PREFIX.getCode() + userId);
+    }
+
+    /**
+     * 复制一份去掉密码和盐的用户
+     */
+    private static User withoutSecret(User user) {
+        User copy = new User();
+        BeanUtils.copyProperties(user, copy, "userPassword", "salt");
+        return copy;
+    }
+}
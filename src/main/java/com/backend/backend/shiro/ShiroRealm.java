@@ -3,6 +3,9 @@ package com.backend.backend.shiro;
 import com.backend.backend.common.utils.StringUtil;
 import com.backend.backend.jwt.JwtToken;
 import com.backend.backend.jwt.JwtUtil;
+import com.backend.backend.jwt.TokenContext;
+import com.backend.backend.shiro.cache.RevocationFilter;
+import com.backend.backend.shiro.cache.VerifiedTokenCache;
 import lombok.RequiredArgsConstructor;
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
@@ -17,7 +20,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import static com.backend.backend.enums.TokenEnum.PAYLOAD_USER_ID_TAG;
 
 /**
  * @Author: goodtimp
@@ -60,18 +62,48 @@ public class ShiroRealm extends AuthorizingRealm {
      */
     @Override
     protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken authenticationToken) throws AuthenticationException {
-        String token = (String) authenticationToken.getCredentials();
-        // 解密获得account，用于和数据库进行对比
-        String userId = JwtUtil.getClaim(token, PAYLOAD_USER_ID_TAG.getCode());
+        JwtToken jwtToken = (JwtToken) authenticationToken;
+        String token = (String) jwtToken.getCredentials();
+        // 短时间内已经验证通过的token直接放行，不再做签名校验和Redis查询
+        if (VerifiedTokenCache.isVerified(token)) {
+            return new SimpleAuthenticationInfo(token, token, "userRealm");
+        }
+        // 解密获得account，用于和数据库进行对比（JwtFilter中已经解析过）
+        TokenContext context = jwtToken.getContext();
+        String userId = context.getUserIdText();
         // 帐号为空
         if (StringUtil.isBlank(userId)) {
             throw new AuthenticationException("Token中帐号为空(The account in Token is empty.)");
         }
+        // 验证前取失效代数，验证期间该用户的token被清除时不放入缓存
+        long generation = VerifiedTokenCache.generation(userId);
         // 开始认证，要AccessToken认证通过，且Redis中存在RefreshToken，且两个Token时间戳一致
-        if (JwtUtil.verify(token) && JwtUtil.judgeRefreshToken(token)) {
+        if (JwtUtil.verify(context) && this.judgeNotRevoked(context)) {
+            VerifiedTokenCache.put(token, userId, context.getCreateTime(), context.getExpiresAt(), generation);
             return new SimpleAuthenticationInfo(token, token, "userRealm");
         }
         throw new AuthenticationException("Token已过期(Token expired or incorrect.)");
     }
 
+    /**
+     * 判断这次登录没有被撤销
+     * 开启本地撤销过滤时先查本地记录，无法确定的才查Redis中的RefreshToken
+     *
+     * @param context
+     * @return
+     */
+    private boolean judgeNotRevoked(TokenContext context) {
+        if (!RevocationFilter.isEnabled()) {
+            return JwtUtil.judgeRefreshToken(context);
+        }
+        switch (RevocationFilter.check(context.getUserIdText(), context.getCreateTime())) {
+            case CLEAR:
+                return true;
+            case REVOKED:
+                return false;
+            default:
+                return JwtUtil.judgeRefreshToken(context);
+        }
+    }
+
 }
@@ -1,7 +1,6 @@
 package com.backend.backend.shiro.cache;
 
-import com.backend.backend.enums.TokenEnum;
-import com.backend.backend.jwt.JwtUtil;
+import com.backend.backend.jwt.TokenContext;
 import com.backend.backend.redis.RedisUtil;
 import org.apache.shiro.cache.Cache;
 import org.apache.shiro.cache.CacheException;
@@ -32,7 +31,7 @@ public class CustomCache<K, V> implements Cache<K, V> {
      * @date 2018/9/4 18:33
      */
     private String getKey(Object key) {
-        return SHIRO_CACHE_PREFIX.getCode() + JwtUtil.getClaim(key.toString(), TokenEnum.PAYLOAD_USER_ID_TAG.getCode());
+        return SHIRO_CACHE_PREFIX.getCode() + TokenContext.of(key.toString()).getUserIdText();
     }
 
     /**
@@ -92,11 +91,8 @@ public class CustomCache<K, V> implements Cache<K, V> {
      */
     @Override
     public Collection values() {
-        Set keys = this.keys();
         List<Object> values = new ArrayList<Object>();
-        for (Object key : keys) {
-            values.add(RedisUtil.get(key.toString()));
-        }
+        RedisUtil.scan(REFRESH_TOKEN_PREFIX.getCode() + "*", batch -> values.addAll(RedisUtil.mget(batch)));
         return values;
     }
 }
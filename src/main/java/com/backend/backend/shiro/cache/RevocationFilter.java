@@ -0,0 +1,220 @@
+package com.backend.backend.shiro.cache;
+
+import com.backend.backend.common.cache.BloomFilter;
+import com.backend.backend.redis.RedisUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.backend.backend.enums.RedisEnum.TOKEN_REVOCATION_LOG;
+import static com.backend.backend.enums.TokenEnum.*;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 15:55
+ * @description :  本地token撤销过滤器（可选认证模式）
+ * 开启后ShiroRealm不再每次请求都查Redis中的refreshToken，而是查本地的撤销记录：
+ * 布隆过滤器记录accessToken有效期内的所有撤销，未命中即未被撤销；命中后再查最近撤销的精确记录，
+ * 仍无法确定的才回到Redis判断。
+ * 撤销记录由deleteRefreshToken、updateRefreshToken、forcedOffLine写入Redis有序集合(分数为撤销时间)，
+ * 各节点定时增量拉取，同时通过token失效的发布订阅即时收到。
+ */
+@Component
+public class RevocationFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevocationFilter.class);
+
+    /**
+     * 检查结果
+     */
+    public enum Result {
+        /**
+         * 未被撤销
+         */
+        CLEAR,
+        /**
+         * 无法确定，需要查Redis
+         */
+        MAYBE,
+        /**
+         * 已被撤销
+         */
+        REVOKED
+    }
+
+    /**
+     * 布隆过滤器每一代的存活时间，与accessToken有效期一致，超过的token签名校验时就已过期
+     */
+    private static final long GENERATION_TTL = Long.parseLong(ACCESS_TOKEN_EXPIRE_TIME.getCode()) * 1000L;
+
+    private static final long BLOOM_SIZE = Long.parseLong(REVOCATION_BLOOM_SIZE.getCode());
+
+    private static final long RECENT_WINDOW = Long.parseLong(REVOCATION_RECENT_WINDOW.getCode()) * 1000L;
+
+    private static final long CLOCK_SKEW = Long.parseLong(REVOCATION_CLOCK_SKEW.getCode());
+
+    /**
+     * 最近的撤销记录，"userId:createTime"或"userId:" -> 撤销时间
+     */
+    private static final Map<String, Long> RECENT = new ConcurrentHashMap<>();
+
+    private static volatile BloomFilter current = new BloomFilter(BLOOM_SIZE, 0.001);
+    private static volatile BloomFilter previous = new BloomFilter(BLOOM_SIZE, 0.001);
+    private static volatile long generationStart = System.currentTimeMillis();
+
+    private static boolean enabled = false;
+    private static long syncInterval = 1000L;
+
+    /**
+     * 已拉取到的最大撤销时间
+     */
+    private static volatile long lastScore = 0L;
+    /**
+     * 上次成功同步的时间，0表示还未同步过
+     */
+    private static volatile long lastSyncAt = 0L;
+
+    @Value("${auth.local-revocation:false}")
+    public void setEnabled(boolean enabled) {
+        RevocationFilter.enabled = enabled;
+    }
+
+    @Value("${auth.revocation-sync-interval:1000}")
+    public void setSyncInterval(long syncInterval) {
+        RevocationFilter.syncInterval = syncInterval;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 检查一次登录是否被撤销
+     *
+     * @param userId
+     * @param createTime token中的签发时间戳
+     * @return
+     */
+    public static Result check(String userId, String createTime) {
+        // 长时间没有同步成功，本地记录不可信
+        if (System.currentTimeMillis() - lastSyncAt > syncInterval * 10) {
+            return Result.MAYBE;
+        }
+        String loginKey = userId + ":" + createTime;
+        String userKey = userId + ":";
+        boolean loginHit = mightContain(loginKey);
+        boolean userHit = mightContain(userKey);
+        if (!loginHit && !userHit) {
+            return Result.CLEAR;
+        }
+        if (loginHit && RECENT.containsKey(loginKey)) {
+            return Result.REVOKED;
+        }
+        if (userHit) {
+            // 强制下线撤销的是撤销时间之前签发的token，时钟误差范围内的交给Redis判断
+            Long revokedAt = RECENT.get(userKey);
+            if (revokedAt == null || parseTime(createTime) <= revokedAt + CLOCK_SKEW) {
+                return Result.MAYBE;
+            }
+        }
+        return loginHit ? Result.MAYBE : Result.CLEAR;
+    }
+
+    /**
+     * 记录撤销并写入Redis撤销日志，其他节点定时拉取
+     *
+     * @param message   "userId:createTime"撤销一次登录，"userId:"撤销该用户此前的所有登录
+     * @param revokedAt 撤销时间
+     */
+    public static void publish(String message, long revokedAt) {
+        revoke(message, revokedAt);
+        RedisUtil.zAdd(TOKEN_REVOCATION_LOG.getCode(), message, revokedAt);
+        // 超过accessToken有效期的记录已经没有意义
+        RedisUtil.zRemoveRangeByScore(TOKEN_REVOCATION_LOG.getCode(), Double.NEGATIVE_INFINITY, revokedAt - GENERATION_TTL);
+    }
+
+    /**
+     * 记录一条撤销，只修改本地
+     *
+     * @param message   同publish
+     * @param revokedAt 撤销时间
+     */
+    public static void revoke(String message, long revokedAt) {
+        if (message == null || message.indexOf(':') < 0) {
+            return;
+        }
+        current.put(message);
+        RECENT.merge(message, revokedAt, Math::max);
+    }
+
+    /**
+     * 定时从Redis增量拉取撤销日志，同时轮换布隆过滤器、清理过期的精确记录
+     */
+    @Scheduled(fixedDelayString = "${auth.revocation-sync-interval:1000}")
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - generationStart >= GENERATION_TTL) {
+            rotate(now);
+        }
+        RECENT.values().removeIf(revokedAt -> revokedAt < now - RECENT_WINDOW);
+        try {
+            // 首次拉取accessToken有效期内的全部记录，之后按分数增量拉取，留出时钟误差
+            double min = lastSyncAt == 0 ? now - GENERATION_TTL : lastScore - CLOCK_SKEW;
+            Set<ZSetOperations.TypedTuple<Object>> logs =
+                    RedisUtil.zRangeByScoreWithScores(TOKEN_REVOCATION_LOG.getCode(), min, Double.POSITIVE_INFINITY);
+            long max = lastScore;
+            if (logs != null) {
+                for (ZSetOperations.TypedTuple<Object> log : logs) {
+                    if (log.getValue() == null || log.getScore() == null) {
+                        continue;
+                    }
+                    long revokedAt = log.getScore().longValue();
+                    String message = log.getValue().toString();
+                    current.put(message);
+                    if (revokedAt >= now - RECENT_WINDOW) {
+                        RECENT.merge(message, revokedAt, Math::max);
+                    }
+                    max = Math.max(max, revokedAt);
+                }
+            }
+            lastScore = max;
+            lastSyncAt = now;
+        } catch (Exception e) {
+            logger.error("同步token撤销记录出现异常:" + e.getMessage());
+        }
+    }
+
+    private static boolean mightContain(String key) {
+        return current.mightContain(key) || previous.mightContain(key);
+    }
+
+    /**
+     * 新建一代布隆过滤器，上一代保留到下一次轮换，保证每条撤销至少被记住一个accessToken有效期
+     */
+    private static synchronized void rotate(long now) {
+        if (now - generationStart < GENERATION_TTL) {
+            return;
+        }
+        previous = current;
+        current = new BloomFilter(BLOOM_SIZE, 0.001);
+        generationStart = now;
+    }
+
+    private static long parseTime(String createTime) {
+        try {
+            return Long.parseLong(createTime);
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
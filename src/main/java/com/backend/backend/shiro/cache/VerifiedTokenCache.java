@@ -0,0 +1,219 @@
+package com.backend.backend.shiro.cache;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.backend.backend.enums.TokenEnum.SHIRO_CACHE_EXPIRE_TIME;
+import static com.backend.backend.enums.TokenEnum.VERIFIED_TOKEN_CACHE_SIZE;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 10:12
+ * @description :  本地已验证token缓存
+ * 已经通过签名校验且Redis中存在refreshToken的token放入此缓存，同一个token再次请求时跳过HMAC校验和Redis查询。
+ * 过期时间取token的exp和SHIRO_CACHE_EXPIRE_TIME中较早的一个，
+ * refreshToken被删除或用户被强制下线时通过Redis发布订阅通知所有节点清除。
+ * 清除时先增加该用户的失效代数再删除，验证前取的代数与放入后不一致的条目不保留，验证期间发生的清除不会被覆盖。
+ * 条目按userId建索引，清除一个用户只访问该用户的条目。
+ */
+public class VerifiedTokenCache {
+
+    /**
+     * 最大缓存条数
+     */
+    private static final int MAX_SIZE = Integer.parseInt(VERIFIED_TOKEN_CACHE_SIZE.getCode());
+
+    /**
+     * 缓存最长存活时间(毫秒)
+     */
+    private static final long MAX_TTL = Long.parseLong(SHIRO_CACHE_EXPIRE_TIME.getCode()) * 1000L;
+
+    /**
+     * 失效代数按userId分段记录，段数固定，不随用户数增长；同段的其他用户被清除时只会多一次未命中
+     */
+    private static final int GENERATION_STRIPES = 1024;
+
+    private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * userId -> 该用户的token
+     */
+    private static final Map<String, Set<String>> BY_USER = new ConcurrentHashMap<>();
+
+    private static final AtomicLongArray GENERATIONS = new AtomicLongArray(GENERATION_STRIPES);
+
+    private VerifiedTokenCache() {
+    }
+
+    /**
+     * token是否已经验证过并且仍在有效期内
+     *
+     * @param token
+     * @return
+     */
+    public static boolean isVerified(String token) {
+        Entry entry = CACHE.get(token);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.expireAt <= System.currentTimeMillis()) {
+            remove(token, entry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 用户当前的失效代数，开始验证token前获取，放入时传给put
+     *
+     * @param userId
+     * @return
+     */
+    public static long generation(String userId) {
+        return GENERATIONS.get(stripe(userId));
+    }
+
+    /**
+     * 记录一个已验证的token，验证期间该用户被清除过的不记录
+     *
+     * @param token
+     * @param userId     token中的用户Id
+     * @param createTime token中的签发时间戳
+     * @param expiresAt  token的过期时间
+     * @param generation 开始验证前generation(userId)的返回值
+     */
+    public static void put(String token, String userId, String createTime, Date expiresAt, long generation) {
+        long now = System.currentTimeMillis();
+        long expireAt = now + MAX_TTL;
+        if (expiresAt != null) {
+            expireAt = Math.min(expireAt, expiresAt.getTime());
+        }
+        if (expireAt <= now || generation(userId) != generation) {
+            return;
+        }
+        if (CACHE.size() >= MAX_SIZE) {
+            evict(now);
+        }
+        Entry entry = new Entry(userId, createTime, expireAt);
+        Entry previous = CACHE.put(token, entry);
+        if (previous != null && !previous.userId.equals(entry.userId)) {
+            unindex(token, previous.userId);
+        }
+        BY_USER.compute(entry.userId, (k, tokens) -> {
+            Set<String> result = tokens == null ? ConcurrentHashMap.newKeySet() : tokens;
+            result.add(token);
+            return result;
+        });
+        // 放入之后再检查一次：清除先增加代数再删除，这里看不到变化说明清除还没开始删除，删除时会找到这个条目
+        if (generation(userId) != generation) {
+            remove(token, entry);
+        }
+    }
+
+    /**
+     * 根据通知消息清除缓存
+     *
+     * @param message "userId:createTime"清除对应的一次登录，"userId:"清除该用户的所有token
+     */
+    public static void invalidate(String message) {
+        if (message == null) {
+            return;
+        }
+        int index = message.indexOf(':');
+        if (index < 0) {
+            return;
+        }
+        String userId = message.substring(0, index);
+        String createTime = message.substring(index + 1);
+        GENERATIONS.incrementAndGet(stripe(userId));
+        Set<String> tokens = BY_USER.get(userId);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Entry entry = CACHE.get(token);
+            if (entry == null) {
+                unindex(token, userId);
+            } else if (entry.userId.equals(userId) && (createTime.isEmpty() || entry.createTime.equals(createTime))) {
+                remove(token, entry);
+            }
+        }
+    }
+
+    /**
+     * 构造清除通知消息
+     *
+     * @param userId
+     * @param createTime 为空时表示该用户的所有token
+     * @return
+     */
+    public static String invalidateMessage(String userId, String createTime) {
+        return userId + ":" + (createTime == null ? "" : createTime);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public static void clear() {
+        CACHE.clear();
+        BY_USER.clear();
+    }
+
+    /**
+     * 缓存条数
+     */
+    public static int size() {
+        return CACHE.size();
+    }
+
+    /**
+     * 先清理过期的，仍然超出则随机淘汰一部分
+     */
+    private static void evict(long now) {
+        for (Map.Entry<String, Entry> e : CACHE.entrySet()) {
+            if (e.getValue().expireAt <= now) {
+                remove(e.getKey(), e.getValue());
+            }
+        }
+        Iterator<Map.Entry<String, Entry>> iterator = CACHE.entrySet().iterator();
+        int overflow = CACHE.size() - MAX_SIZE + MAX_SIZE / 10;
+        while (overflow-- > 0 && iterator.hasNext()) {
+            Map.Entry<String, Entry> e = iterator.next();
+            remove(e.getKey(), e.getValue());
+        }
+    }
+
+    private static void remove(String token, Entry entry) {
+        if (CACHE.remove(token, entry)) {
+            unindex(token, entry.userId);
+        }
+    }
+
+    private static void unindex(String token, String userId) {
+        BY_USER.computeIfPresent(userId, (k, tokens) -> {
+            tokens.remove(token);
+            return tokens.isEmpty() ? null : tokens;
+        });
+    }
+
+    private static int stripe(String userId) {
+        int hash = userId == null ? 0 : userId.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    private static class Entry {
+        private final String userId;
+        private final String createTime;
+        private final long expireAt;
+
+        private Entry(String userId, String createTime, long expireAt) {
+            this.userId = userId == null ? "" : userId;
+            this.createTime = createTime == null ? "" : createTime;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+-- 清除用户缓存：先增加版本号，让正在查库的加载不再写入，再删除缓存
+-- KEYS[1] 用户缓存的key   KEYS[2] 版本号的key
+-- ARGV[1] 版本号的存活时间(毫秒)，远大于一次查库的时间即可
+redis.call('INCR', KEYS[2])
+redis.call('PEXPIRE', KEYS[2], ARGV[1])
+return redis.call('DEL', KEYS[1])
@@ -0,0 +1,8 @@
+-- 批量增减驿站各状态的计数，一次往返，全部成功或全部不执行
+-- KEYS[i] 第i个计数所在驿站的key
+-- ARGV[2i-1] 状态   ARGV[2i] 增量，可以为负
+-- hash的field为原始字符串，计数为整数，与RedisUtil.hincr一致
+for i = 1, #KEYS do
+    redis.call('HINCRBY', KEYS[i], ARGV[2 * i - 1], tonumber(ARGV[2 * i]))
+end
+return tostring(#KEYS)
@@ -0,0 +1,7 @@
+-- 释放锁：值仍是自己放入的token时才删除，锁已过期并被其他节点拿到时不动
+-- KEYS[1] 锁的key   ARGV[1] 加锁时放入的token
+-- 参数与值都经过RedisTemplate的Jackson序列化，可以直接比较
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
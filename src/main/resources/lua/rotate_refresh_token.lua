@@ -0,0 +1,21 @@
+-- 原子轮换refreshToken：原key写入墓碑（删除前缀+新accessToken），refreshToken按原过期时间移到新key
+-- KEYS[1] 原refreshToken的key   KEYS[2] 新refreshToken的key
+-- ARGV[1] 墓碑前缀   ARGV[2] 新签发的accessToken   ARGV[3] 墓碑存在时间(毫秒)
+-- 返回本次应下发的accessToken：已被其他请求轮换过则返回墓碑中的token，原refreshToken不存在返回nil
+-- 值与RedisTemplate的Jackson序列化保持一致，字符串为json字符串
+local old = redis.call('GET', KEYS[1])
+if not old then
+    return nil
+end
+local value = cjson.decode(old)
+if type(value) == 'string' and string.sub(value, 1, string.len(ARGV[1])) == ARGV[1] then
+    return string.sub(value, string.len(ARGV[1]) + 1)
+end
+local ttl = redis.call('PTTL', KEYS[1])
+redis.call('SET', KEYS[1], cjson.encode(ARGV[1] .. ARGV[2]), 'PX', ARGV[3])
+if ttl > 0 then
+    redis.call('SET', KEYS[2], old, 'PX', ttl)
+else
+    redis.call('SET', KEYS[2], old)
+end
+return ARGV[2]
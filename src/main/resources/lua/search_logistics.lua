@@ -0,0 +1,89 @@
+-- 按n-gram倒排索引检索物流，返回按得分从高到低的logId和得分
+-- KEYS[1] 结果临时有序集合   KEYS[2] 单个gram的临时有序集合   KEYS[3] 单个字段的临时有序集合
+-- KEYS[4] 驿站集合(ARGV[2]为1时)   其余KEYS 依次为每个gram在各字段的集合，每个gram F个
+-- ARGV[1] 返回条数   ARGV[2] 是否按驿站过滤(1/0)   ARGV[3] 停用gram的条数下限   ARGV[4] 候选集最大条数
+-- ARGV[5] 字段数F   ARGV[6..5+F] 字段权重
+-- 候选集超过ARGV[4]时返回 {'overflow'}
+-- 每命中一个gram得 HIT + 命中字段中的最大权重，HIT大于所有权重之和，所以得分先按命中gram数、再按字段权重排序，
+-- 至少命中一半gram即得分不低于 一半gram数 * HIT。
+-- 只需命中一半，所以最稀有的 n - 一半 + 1 个gram中至少命中一个：先用它们(按驿站过滤时先与驿站集合求交)得到候选集，
+-- 其余gram只与候选集求交，结果逐个累加到候选集上。停用gram和候选集都有上限，脚本的执行时间有界。
+-- 脚本原子执行，临时集合用完即删
+local HIT = 1024
+local limit = tonumber(ARGV[1])
+local first = 4
+local station = false
+if ARGV[2] == '1' then
+    station = KEYS[4]
+    first = 5
+end
+local stopSize = tonumber(ARGV[3])
+local maxCandidates = tonumber(ARGV[4])
+local fieldCount = tonumber(ARGV[5])
+local weights = {}
+for f = 1, fieldCount do
+    weights[f] = tonumber(ARGV[5 + f])
+end
+
+local grams = {}
+for i = first, #KEYS, fieldCount do
+    local keys = {}
+    local size = 0
+    for f = 1, fieldCount do
+        keys[f] = KEYS[i + f - 1]
+        size = size + redis.call('SCARD', keys[f])
+    end
+    grams[#grams + 1] = { keys = keys, size = size }
+end
+if #grams == 0 then
+    return {}
+end
+table.sort(grams, function(a, b)
+    return a.size < b.size
+end)
+-- 去掉条数过多的停用gram(如"市""区")，它们几乎不区分结果；全是停用gram时保留最稀有的一个
+local n = #grams
+while n > 1 and grams[n].size > stopSize do
+    grams[n] = nil
+    n = n - 1
+end
+local need = math.floor((n + 1) / 2)
+local candidates = n - need + 1
+
+local function cleanup()
+    redis.call('DEL', KEYS[1], KEYS[2], KEYS[3])
+end
+
+cleanup()
+for i = 1, n do
+    -- 候选gram按驿站过滤(不过滤时直接取)，其余gram只取候选集中的
+    local restrict = station
+    if i > candidates then
+        restrict = KEYS[1]
+    end
+    redis.call('DEL', KEYS[2])
+    for f = 1, fieldCount do
+        local score = HIT + weights[f]
+        if restrict then
+            redis.call('ZINTERSTORE', KEYS[3], 2, restrict, grams[i].keys[f], 'WEIGHTS', 0, score)
+            redis.call('ZUNIONSTORE', KEYS[2], 2, KEYS[2], KEYS[3], 'AGGREGATE', 'MAX')
+        else
+            redis.call('ZUNIONSTORE', KEYS[2], 2, KEYS[2], grams[i].keys[f], 'WEIGHTS', 1, score, 'AGGREGATE', 'MAX')
+        end
+    end
+    -- 只累加本gram命中的成员，不重写整个候选集
+    local hits = redis.call('ZRANGE', KEYS[2], 0, -1, 'WITHSCORES')
+    for j = 1, #hits, 2 do
+        redis.call('ZINCRBY', KEYS[1], hits[j + 1], hits[j])
+    end
+    if i <= candidates and redis.call('ZCARD', KEYS[1]) > maxCandidates then
+        cleanup()
+        return { 'overflow' }
+    end
+    if i == candidates and redis.call('EXISTS', KEYS[1]) == 0 then
+        break
+    end
+end
+local result = redis.call('ZREVRANGEBYSCORE', KEYS[1], '+inf', need * HIT, 'WITHSCORES', 'LIMIT', 0, limit)
+cleanup()
+return result
@@ -0,0 +1,10 @@
+-- 查库后写入用户缓存，查库期间缓存被清除过（版本号变了）则不写，避免旧数据覆盖清除
+-- KEYS[1] 用户缓存的key   KEYS[2] 版本号的key
+-- ARGV[1] 查库前读到的版本号   ARGV[2] 用户   ARGV[3] 存活时间(毫秒)
+-- 参数与值都经过RedisTemplate的Jackson序列化，版本号是INCR写入的整数，与序列化后的数字一致
+local version = redis.call('GET', KEYS[2]) or '0'
+if version ~= ARGV[1] then
+    return 0
+end
+redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+return 1
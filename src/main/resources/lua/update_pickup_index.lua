@@ -0,0 +1,25 @@
+-- 批量修改取件码索引，一次往返
+-- KEYS[i] 第i个操作的驿站索引hash
+-- ARGV[3i-2] 操作：put、del   ARGV[3i-1] 取件码   ARGV[3i] put时为记录的json，del时为logId
+-- put直接写入；del只删除仍指向该logId的条目，取件码已被其他物流使用的不删
+-- json与RedisTemplate用Jackson序列化的结果相同：["类名",{...,"logId":"123",...}]，logId按字符串存，不丢精度
+local changed = 0
+for i = 1, #KEYS do
+    local op = ARGV[3 * i - 2]
+    local field = ARGV[3 * i - 1]
+    local value = ARGV[3 * i]
+    if op == 'put' then
+        redis.call('HSET', KEYS[i], field, value)
+        changed = changed + 1
+    else
+        local current = redis.call('HGET', KEYS[i], field)
+        if current then
+            local ok, decoded = pcall(cjson.decode, current)
+            if ok and type(decoded) == 'table' and type(decoded[2]) == 'table' and decoded[2].logId == value then
+                redis.call('HDEL', KEYS[i], field)
+                changed = changed + 1
+            end
+        end
+    end
+end
+return tostring(changed)
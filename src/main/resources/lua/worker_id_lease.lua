@@ -0,0 +1,20 @@
+-- 机器Id租约：获取、续期、释放
+-- KEYS[1] 租约的key   KEYS[2] 该机器Id上次使用到的时间戳的key
+-- ARGV[1] 操作：acquire、renew、release   ARGV[2] 本节点的标识   ARGV[3] 租约时间(毫秒)   ARGV[4] 本节点使用到的时间戳
+-- 值都是原始字符串。acquire成功返回上次使用到的时间戳(没有为'0')，失败返回nil；renew、release成功返回'1'，租约已不属于本节点返回'0'
+if ARGV[1] == 'acquire' then
+    if not redis.call('SET', KEYS[1], ARGV[2], 'NX', 'PX', ARGV[3]) then
+        return nil
+    end
+    return redis.call('GET', KEYS[2]) or '0'
+end
+if redis.call('GET', KEYS[1]) ~= ARGV[2] then
+    return '0'
+end
+redis.call('SET', KEYS[2], ARGV[4])
+if ARGV[1] == 'renew' then
+    redis.call('PEXPIRE', KEYS[1], ARGV[3])
+else
+    redis.call('DEL', KEYS[1])
+end
+return '1'
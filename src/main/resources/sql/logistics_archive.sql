@@ -0,0 +1,27 @@
+-- 物流信息归档表，字段与logistics相同，另加归档时间
+-- 开启logistics.archive.enabled前执行，可重复执行，表已存在时不做任何修改
+-- 归档时按字段名从logistics复制(LogisticsArchiveMapper.COLUMNS)，字段类型与logistics保持一致
+-- 查询按驿站或手机号过滤、按log_id倒序翻页，两个索引都带上log_id
+CREATE TABLE IF NOT EXISTS logistics_archive
+(
+    log_id           BIGINT       NOT NULL COMMENT '物流Id',
+    type             INT          NULL COMMENT '物流状态',
+    product_name     VARCHAR(255) NULL COMMENT '物品名称',
+    log_code         VARCHAR(255) NULL COMMENT '取件码',
+    post_id          BIGINT       NULL COMMENT '驿站Id',
+    delivery_address VARCHAR(255) NULL COMMENT '收货地址',
+    ship_address     VARCHAR(255) NULL COMMENT '发货地址',
+    phone            VARCHAR(255) NULL COMMENT '收货人手机号',
+    del_flag         INT          NULL COMMENT '删除标志 正常：0 删除：1',
+    create_by        VARCHAR(255) NULL COMMENT '创建者',
+    create_by_id     BIGINT       NULL COMMENT '创建者Id',
+    create_time      DATETIME     NULL COMMENT '创建时间',
+    update_by        VARCHAR(255) NULL COMMENT '更新者',
+    update_by_id     BIGINT       NULL COMMENT '更新者Id',
+    update_time      DATETIME     NULL COMMENT '更新时间',
+    remark           VARCHAR(255) NULL COMMENT '备注',
+    archive_time     DATETIME     NULL COMMENT '归档时间',
+    PRIMARY KEY (log_id),
+    INDEX idx_archive_post_id (post_id, log_id),
+    INDEX idx_archive_phone (phone, log_id)
+) COMMENT '物流信息归档';
@@ -0,0 +1,208 @@
+package com.backend.backend.common.id;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 11:10
+ * @description :  雪花Id生成器的测试，时钟由测试控制
+ */
+public class SnowflakeIdGeneratorTest {
+
+    private static final long START = SnowflakeIdGenerator.EPOCH + 1000000000L;
+    private static final long PER_MILLI = 1L << SnowflakeIdGenerator.SEQUENCE_BITS;
+
+    /**
+     * 时钟由测试设置的生成器
+     */
+    private static class ManualClockGenerator extends SnowflakeIdGenerator {
+
+        private volatile long millis = START;
+        private volatile long nanos = 0L;
+
+        ManualClockGenerator(long workerId, long lastTimestamp, long maxAheadMillis) {
+            super(workerId, lastTimestamp, maxAheadMillis);
+        }
+
+        @Override
+        protected long timeGen() {
+            return millis;
+        }
+
+        @Override
+        protected long nanoTime() {
+            return nanos;
+        }
+    }
+
+    private static long workerIdOf(long id) {
+        return (id >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_WORKER_ID;
+    }
+
+    private static long sequenceOf(long id) {
+        return id & (PER_MILLI - 1);
+    }
+
+    @Test
+    public void idsCarryTimestampAndWorkerId() {
+        ManualClockGenerator generator = new ManualClockGenerator(5, 0L, 1000L);
+        long id = generator.nextId();
+        assertEquals(START, SnowflakeIdGenerator.timestampOf(id));
+        assertEquals(5, workerIdOf(id));
+        assertEquals(0, sequenceOf(id));
+    }
+
+    @Test
+    public void sequenceOverflowCarriesIntoNextMilli() {
+        ManualClockGenerator generator = new ManualClockGenerator(1, 0L, 1000L);
+        long previous = -1L;
+        for (int i = 0; i < PER_MILLI; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            assertEquals(START, SnowflakeIdGenerator.timestampOf(id));
+            previous = id;
+        }
+        long next = generator.nextId();
+        assertTrue(next > previous);
+        assertEquals(START + 1, SnowflakeIdGenerator.timestampOf(next));
+        assertEquals(0, sequenceOf(next));
+    }
+
+    @Test
+    public void smallClockRollbackKeepsIncreasing() {
+        ManualClockGenerator generator = new ManualClockGenerator(1, 0L, 1000L);
+        long before = generator.nextId();
+        generator.millis = START - 500;
+        long after = generator.nextId();
+        assertTrue(after > before);
+        assertEquals(START, SnowflakeIdGenerator.timestampOf(after));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void largeClockRollbackIsRejected() {
+        ManualClockGenerator generator = new ManualClockGenerator(1, 0L, 1000L);
+        generator.nextId();
+        generator.millis = START - 60000;
+        generator.nextId();
+    }
+
+    @Test
+    public void nextIdsAreIncreasingAndContinueWithNextId() {
+        ManualClockGenerator generator = new ManualClockGenerator(1, 0L, 1000L);
+        long first = generator.nextId();
+        long[] ids = generator.nextIds((int) PER_MILLI + 10);
+        long previous = first;
+        for (long id : ids) {
+            assertTrue(id > previous);
+            assertEquals(1, workerIdOf(id));
+            previous = id;
+        }
+        assertEquals("跨过毫秒边界", START + 1, SnowflakeIdGenerator.timestampOf(ids[ids.length - 1]));
+        assertTrue(generator.nextId() > previous);
+        assertEquals(0, generator.nextIds(0).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nextIdsRejectsTooMany() {
+        new ManualClockGenerator(1, 0L, 1L).nextIds((int) PER_MILLI * 2);
+    }
+
+    @Test
+    public void changeWorkerIdNeverGoesBackwards() {
+        ManualClockGenerator generator = new ManualClockGenerator(1, 0L, 1000L);
+        long before = generator.nextId();
+
+        generator.changeWorkerId(2, START - 5000);
+        long afterOlder = generator.nextId();
+        assertTrue(afterOlder > before);
+        assertEquals(2, workerIdOf(afterOlder));
+        assertEquals(2, generator.getWorkerId());
+
+        generator.changeWorkerId(3, START + 500);
+        long afterNewer = generator.nextId();
+        assertTrue(afterNewer > afterOlder);
+        assertEquals(3, workerIdOf(afterNewer));
+        assertTrue("不早于新机器Id上次使用到的时间戳", SnowflakeIdGenerator.timestampOf(afterNewer) >= START + 500);
+        assertEquals(SnowflakeIdGenerator.timestampOf(afterNewer), generator.lastTimestamp());
+    }
+
+    @Test
+    public void startsAfterLastTimestamp() {
+        ManualClockGenerator generator = new ManualClockGenerator(1, START + 200, 1000L);
+        assertTrue(SnowflakeIdGenerator.timestampOf(generator.nextId()) >= START + 200);
+    }
+
+    @Test
+    public void expiredLeaseStopsIssuing() {
+        ManualClockGenerator generator = new ManualClockGenerator(1, 0L, 1000L);
+        generator.leaseUntil(100L);
+        generator.nanos = 99L;
+        generator.nextId();
+
+        generator.nanos = 100L;
+        try {
+            generator.nextId();
+            fail("租约过期后应拒绝发号");
+        } catch (IllegalStateException expected) {
+            // 租约已过期
+        }
+
+        generator.leaseUntil(200L);
+        generator.nextIds(3);
+
+        generator.expireLease();
+        try {
+            generator.nextIds(3);
+            fail("租约丢失后应拒绝发号");
+        } catch (IllegalStateException expected) {
+            // 租约已丢失
+        }
+
+        generator.clearLease();
+        generator.nextId();
+    }
+
+    @Test
+    public void concurrentIdsAreUniqueWhileChangingWorkerId() throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 0L, 1000L);
+        int threads = 4;
+        int perThread = 20000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        Set<Long> workerIds = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    long id = generator.nextId();
+                    ids.add(id);
+                    workerIds.add(workerIdOf(id));
+                }
+            });
+        }
+        start.countDown();
+        for (int w = 2; w <= 5; w++) {
+            generator.changeWorkerId(w, 0L);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(threads * perThread, ids.size());
+        for (long workerId : workerIds) {
+            assertTrue(workerId >= 1 && workerId <= 5);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.backend.backend.datasource;
+
+import com.backend.backend.common.model.CursorPage;
+import com.backend.backend.model.entity.Logistics;
+import com.backend.backend.service.support.StationQueryCache;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @Author: goodtimp
+ * @Date: 2026/10/17 10:40
+ * @description :  读写分离路由和写后读主库的测试
+ * 主库和从库是两个H2内存库，各有一行标明自己是哪个库。
+ */
+public class ReadWriteRoutingTest {
+
+    private static final long WINDOW = 300L;
+
+    private RoutingDataSource dataSource;
+    private ReadYourWritesTracker tracker;
+    private final List<Long> broadcasts = Collections.synchronizedList(new ArrayList<>());
+    private Long userId;
+    private DbService service;
+
+    public interface DbService {
+        String getDb();
+
+        @ReadFromPrimary
+        String getDbFromPrimary();
+
+        /**
+         * 经过驿站查询缓存读
+         */
+        String getDbCached();
+
+        void touch();
+    }
+
+    @Before
+    public void setUp() {
+        dataSource = new RoutingDataSource(h2("primary", false), h2("replica", true));
+        dataSource.afterPropertiesSet();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        StationQueryCache queryCache = new StationQueryCache(100, 60000L) {
+            @Override
+            protected String version(Long postId) {
+                return "1";
+            }
+        };
+        DbService target = new DbService() {
+            @Override
+            public String getDb() {
+                return jdbcTemplate.queryForObject("SELECT name FROM db", String.class);
+            }
+
+            @Override
+            public String getDbFromPrimary() {
+                return getDb();
+            }
+
+            @Override
+            public String getDbCached() {
+                CursorPage<Logistics> page = queryCache.get(1L, "", () -> {
+                    Logistics logistics = new Logistics();
+                    logistics.setProductName(getDb());
+                    return new CursorPage<>(Collections.singletonList(logistics), null, false);
+                });
+                return page.getRecords().get(0).getProductName();
+            }
+
+            @Override
+            public void touch() {
+                jdbcTemplate.update("UPDATE db SET name = name");
+            }
+        };
+        tracker = new ReadYourWritesTracker(WINDOW, broadcasts::add);
+        ReadWriteRoutingAdvisor advisor = new ReadWriteRoutingAdvisor(Collections.singletonList(DbService.class), tracker) {
+            @Override
+            protected Long currentUserId() {
+                return userId;
+            }
+        };
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addInterface(DbService.class);
+        proxyFactory.addAdvisor(advisor);
+        service = (DbService) proxyFactory.getProxy();
+    }
+
+    @After
+    public void tearDown() {
+        dataSource.destroy();
+        userId = null;
+    }
+
+    @Test
+    public void readGoesToReplica() {
+        assertEquals("replica", service.getDb());
+    }
+
+    @Test
+    public void markedReadGoesToPrimary() {
+        assertEquals("primary", service.getDbFromPrimary());
+    }
+
+    @Test
+    public void cachedReadIsLoadedFromPrimary() {
+        assertEquals("缓存的结果会被刚写过数据的用户读到，总是从主库加载", "primary", service.getDbCached());
+        assertEquals("加载后恢复原来的路由", "replica", service.getDb());
+    }
+
+    @Test
+    public void readInTransactionGoesToPrimary() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        assertEquals("primary", transactionTemplate.execute(status -> service.getDb()));
+    }
+
+    @Test
+    public void readAfterWriteStaysOnPrimaryWithinWindow() throws InterruptedException {
+        userId = 1L;
+        service.touch();
+        assertEquals(Collections.singletonList(1L), broadcasts);
+        assertEquals("primary", service.getDb());
+
+        userId = 2L;
+        assertEquals("其他用户不受影响", "replica", service.getDb());
+
+        userId = 1L;
+        Thread.sleep(WINDOW + 50L);
+        assertEquals("replica", service.getDb());
+    }
+
+    @Test
+    public void anonymousWriteIsNotTracked() {
+        service.touch();
+        assertEquals(0, broadcasts.size());
+        assertEquals("replica", service.getDb());
+    }
+
+    @Test
+    public void remoteWriteStaysOnPrimaryWithinWindow() throws InterruptedException {
+        tracker.markRemoteWrite(3L);
+        userId = 3L;
+        assertEquals("primary", service.getDb());
+        assertEquals("收到的通知不再转发", 0, broadcasts.size());
+        Thread.sleep(WINDOW + 50L);
+        assertEquals("replica", service.getDb());
+    }
+
+    private static HikariDataSource h2(String name, boolean readOnly) {
+        String url = "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS db (name VARCHAR(16))");
+            statement.execute("DELETE FROM db");
+            statement.execute("INSERT INTO db (name) VALUES ('" + name + "')");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(name);
+        dataSource.setJdbcUrl(url);
+        dataSource.setMaximumPoolSize(2);
+        dataSource.setReadOnly(readOnly);
+        return dataSource;
+    }
+}